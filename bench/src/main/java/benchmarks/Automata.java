@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * This class gives the benchmarks access to the automaton classes. JMH
+ * only accepts benchmarks in a named package, and code in a named package
+ * cannot refer to classes in the default package, so the classes are
+ * looked up by name once and called through constant MethodHandles. The
+ * JIT compiler inlines calls through static final handles, so they cost
+ * the same as direct calls. Objects are passed around as Object.
+ * @author User
+ *
+ */
+final class Automata {
+
+	static final MethodHandle NEW_ELEMENTARY_RULE = constructor("ElementaryRule", int.class);
+	static final MethodHandle NEW_TOTALISTIC_RULE = constructor("TotalisticRule", int.class);
+	static final MethodHandle NEW_CIRCULAR_BOUNDARY = constructor("CircularBoundaryConditions");
+	static final MethodHandle NEW_FIXED_BOUNDARY = constructor("FixedBoundaryConditions", "CellState", "CellState");
+	static final MethodHandle NEW_GENERATION = constructor("Generation", String.class);
+	static final MethodHandle NEW_AUTOMATON = constructor("Automaton", "Rule", "Generation", "BoundaryConditions");
+
+	static final MethodHandle RANDOM_GENERATION = method("RuleSweep", "randomGeneration", int.class, long.class);
+	static final MethodHandle EVOLVE_GENERATION = method("Rule", "evolve", "Generation", "BoundaryConditions", boolean.class);
+	static final MethodHandle EVOLVE = method("Automaton", "evolve", int.class);
+	static final MethodHandle SET_CYCLE_DETECTION = method("Automaton", "setCycleDetection", boolean.class);
+	static final MethodHandle GET_HISTORY = method("Automaton", "getHistory");
+	static final MethodHandle HAMMING_DISTANCES = method("AutomatonMeasurements", "hammingDistances", "Automaton");
+	static final MethodHandle SUBRULE_COUNTS = method("AutomatonMeasurements", "subruleCounts", "Automaton");
+
+	private Automata() {
+	}
+
+	/**
+	 * Return a CellState constant by name.
+	 * @param name
+	 * @return
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static Object cellState(String name) {
+		return Enum.valueOf((Class) load("CellState"), name);
+	}
+
+	private static MethodHandle constructor(String className, Object... parameterTypes) {
+		try {
+			Constructor<?> c = load(className).getDeclaredConstructor(classes(parameterTypes));
+			c.setAccessible(true);
+			return erase(MethodHandles.lookup().unreflectConstructor(c));
+		}
+		catch(ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle method(String className, String name, Object... parameterTypes) {
+		try {
+			Method m = load(className).getDeclaredMethod(name, classes(parameterTypes));
+			m.setAccessible(true);
+			return erase(MethodHandles.lookup().unreflect(m));
+		}
+		catch(ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Replace every automaton class in the type of a handle with Object,
+	 * keeping primitive types, arrays and String.
+	 * @param handle
+	 * @return
+	 */
+	private static MethodHandle erase(MethodHandle handle) {
+		MethodType type = handle.type();
+		for(int i = 0; i < type.parameterCount(); ++i) {
+			type = type.changeParameterType(i, erase(type.parameterType(i)));
+		}
+		return handle.asType(type.changeReturnType(erase(type.returnType())));
+	}
+
+	private static Class<?> erase(Class<?> c) {
+		return c.getPackageName().isEmpty() && !c.isPrimitive() && !c.isArray() ? Object.class : c;
+	}
+
+	private static Class<?>[] classes(Object[] types) {
+		Class<?>[] classes = new Class<?>[types.length];
+		for(int i = 0; i < types.length; ++i) {
+			classes[i] = types[i] instanceof Class ? (Class<?>) types[i] : load((String) types[i]);
+		}
+		return classes;
+	}
+
+	private static Class<?> load(String className) {
+		try {
+			return Class.forName(className);
+		}
+		catch(ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
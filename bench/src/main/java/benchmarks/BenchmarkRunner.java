@@ -0,0 +1,37 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This class runs the benchmarks with the usual JMH command line options.
+ * Unless the options say otherwise, it adds the GC profiler, which reports
+ * the allocation rate of each benchmark, and saves the results as JSON in
+ * jmh-result.json, so runs of different releases can be compared.
+ * @author User
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if(cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams()
+				|| cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+		if(cmd.getProfilers().isEmpty())
+			options.addProfiler(GCProfiler.class);
+		if(!cmd.getResultFormat().hasValue())
+			options.resultFormat(ResultFormatType.JSON);
+		if(!cmd.getResult().hasValue())
+			options.result("jmh-result.json");
+		new Runner(options.build()).run();
+	}
+}
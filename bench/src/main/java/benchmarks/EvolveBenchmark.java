@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures one evolution step of a random Generation for
+ * each kind of rule and boundary conditions, across lattice widths.
+ * @author User
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvolveBenchmark {
+
+	@Param({ "elementary", "totalistic" })
+	public String rule;
+
+	@Param({ "circular", "fixed" })
+	public String boundary;
+
+	@Param({ "100", "10000", "1000000", "10000000" })
+	public int width;
+
+	@Param({ "true", "false" })
+	public boolean trackSubrules;
+
+	private Object ruleObj;
+	private Object bc;
+	private Object gen;
+
+	@Setup
+	public void setup() throws Throwable {
+		this.ruleObj = newRule(this.rule);
+		this.bc = newBoundaryConditions(this.boundary);
+		this.gen = (Object) Automata.RANDOM_GENERATION.invokeExact(this.width, 42L);
+	}
+
+	@Benchmark
+	public Object evolve() throws Throwable {
+		return (Object) Automata.EVOLVE_GENERATION.invokeExact(this.ruleObj, this.gen, this.bc, this.trackSubrules);
+	}
+
+	/**
+	 * Return Rule 30 (elementary) or Rule 22 (totalistic).
+	 * @param kind
+	 * @return
+	 * @throws Throwable
+	 */
+	static Object newRule(String kind) throws Throwable {
+		if(kind.equals("elementary"))
+			return (Object) Automata.NEW_ELEMENTARY_RULE.invokeExact(30);
+		return (Object) Automata.NEW_TOTALISTIC_RULE.invokeExact(22);
+	}
+
+	/**
+	 * Return circular boundary conditions, or fixed ones with the left
+	 * boundary OFF and the right boundary ON.
+	 * @param kind
+	 * @return
+	 * @throws Throwable
+	 */
+	static Object newBoundaryConditions(String kind) throws Throwable {
+		if(kind.equals("circular"))
+			return (Object) Automata.NEW_CIRCULAR_BOUNDARY.invokeExact();
+		return (Object) Automata.NEW_FIXED_BOUNDARY.invokeExact(Automata.cellState("OFF"), Automata.cellState("ON"));
+	}
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures AutomatonMeasurements and getHistory on an
+ * Automaton that has already evolved a number of steps. Cycle detection
+ * is switched off, so every step is a stored Generation.
+ * @author User
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeasurementBenchmark {
+
+	@Param({ "elementary", "totalistic" })
+	public String rule;
+
+	@Param({ "100", "10000", "100000" })
+	public int width;
+
+	@Param({ "100" })
+	public int steps;
+
+	private Object automaton;
+
+	@Setup
+	public void setup() throws Throwable {
+		Object gen = (Object) Automata.RANDOM_GENERATION.invokeExact(this.width, 42L);
+		Object bc = EvolveBenchmark.newBoundaryConditions("circular");
+		this.automaton = (Object) Automata.NEW_AUTOMATON.invokeExact(EvolveBenchmark.newRule(this.rule), gen, bc);
+		Automata.SET_CYCLE_DETECTION.invokeExact(this.automaton, false);
+		Automata.EVOLVE.invokeExact(this.automaton, this.steps);
+	}
+
+	@Benchmark
+	public int[] hammingDistances() throws Throwable {
+		return (int[]) Automata.HAMMING_DISTANCES.invokeExact(this.automaton);
+	}
+
+	@Benchmark
+	public int[][] subruleCounts() throws Throwable {
+		return (int[][]) Automata.SUBRULE_COUNTS.invokeExact(this.automaton);
+	}
+
+	@Benchmark
+	public String getHistory() throws Throwable {
+		return (String) Automata.GET_HISTORY.invokeExact(this.automaton);
+	}
+}
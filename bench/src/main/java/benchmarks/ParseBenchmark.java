@@ -0,0 +1,45 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures parsing a Generation from a String of random
+ * cell states.
+ * @author User
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({ "100", "10000", "1000000", "10000000" })
+	public int width;
+
+	private String states;
+
+	@Setup
+	public void setup() throws Throwable {
+		this.states = ((Object) Automata.RANDOM_GENERATION.invokeExact(this.width, 42L)).toString();
+	}
+
+	@Benchmark
+	public Object parse() throws Throwable {
+		return (Object) Automata.NEW_GENERATION.invokeExact(this.states);
+	}
+}
@@ -3,19 +3,107 @@
  * cells that can be in two states. The rule that governs the evolution
  * of the cells can be any concrete subclass of Rule, and the boundary
  * conditions can be any class that implements BoundaryCondidionts.
+ * An Automaton is not thread-safe; see ConcurrentAutomaton for one that 
+ * can be read by many threads while another evolves it.
  * 
  * @author User
  *
  */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public class Automaton {
 	
 	private Rule rule;
-	private List<Generation> generations = new ArrayList<Generation>();
+	private GenerationHistory generations = new ListHistory();
 	private BoundaryConditions bc;
 	
+	/**
+	 * The number of steps the Automaton has evolved, and the Generation 
+	 * produced by the last of them. The current Generation is always 
+	 * available, even if the history does not retain it.
+	 */
+	private int totalSteps;
+	private Generation current;
+	
+	/**
+	 * The last Generation recomputed for a step the history did not retain.
+	 * Reading evicted steps in increasing order continues from here instead 
+	 * of starting over from a keyframe each time.
+	 */
+	private int recomputedStep = -1;
+	private Generation recomputed;
+	
+	/**
+	 * The number of getGeneration calls answered from the history, and the
+	 * number that had to recompute an evicted step.
+	 */
+	private long historyHits;
+	private long historyRecomputes;
+	
+	/**
+	 * Whether evolved Generations record the subrule number of each Cell.
+	 */
+	private boolean subruleTracking = true;
+	
+	/**
+	 * The pool used to evolve stripes of each Generation concurrently, and 
+	 * the smallest stripe in Cells. If the pool is null, evolution is sequential.
+	 */
+	private ForkJoinPool pool;
+	private int parallelThreshold;
+	
+	private List<EvolutionListener> listeners = new ArrayList<EvolutionListener>();
+	
+	/**
+	 * The engine used to jump many steps at once, or null.
+	 */
+	private MacrocellEngine macrocellEngine;
+	
+	/**
+	 * The number of steps each tile is evolved through at a time with 
+	 * temporal blocking, and the size of a tile in Cells. Blocking is off 
+	 * if blockSteps is less than 2.
+	 */
+	private int blockSteps;
+	private int blockCells;
+	
+	/**
+	 * The number of characters writeHistory collects before writing them out.
+	 */
+	private static final int HISTORY_BUFFER_SIZE = 1 << 16;
+	
+	private AutomatonMetrics metrics = new AutomatonMetrics(this);
+	
+	/**
+	 * Whether to look for a cycle while evolving. A cycle is searched for 
+	 * with Brent's algorithm: each new Generation is compared with a probe 
+	 * Generation, which moves to the latest step whenever the distance 
+	 * between them reaches the next power of 2.
+	 */
+	private boolean cycleDetection;
+	private Generation probe;
+	private int probeStep;
+	private int probePower = 1;
+	
+	/**
+	 * Once a cycle is found, the Generation of step cycleStart + cyclePeriod 
+	 * equals that of step cycleStart, and no step after cycleEnd is stored: 
+	 * the later steps are mapped back onto the period. Before that, 
+	 * cycleStart is -1.
+	 */
+	private int cycleStart = -1;
+	private int cyclePeriod;
+	private int cycleEnd;
+	
 	public Automaton(Rule rule, Generation init, BoundaryConditions bc) {
 		try {
 			this.rule = rule;
@@ -24,7 +112,8 @@ public class Automaton {
 			System.out.println("Automaton constructor, rule");
 		}
 		try {
-			this.generations.add(init);
+			this.generations.add(0, init);
+			this.current = init;
 		}
 		catch(NullPointerException e) {
 			System.out.println("Automaton constructor, generations");
@@ -57,12 +146,9 @@ public class Automaton {
 		}
 		else {
 			try {
-				if(generations.size() > stepNum)
-				return this.generations.get(stepNum);
-				else {
-					evolve(stepNum - (generations.size() - 1));
-					return this.generations.get(stepNum);
-				}
+				if(stepNum > this.totalSteps)
+					evolve(stepNum - this.totalSteps);
+				return generationAt(stepNum);
 			}
 			catch(NullPointerException e) {
 				System.out.println("Automaton getGeneration");
@@ -71,6 +157,137 @@ public class Automaton {
 		return null;
 	}
 	
+	/**
+	 * Return the state of the Cell with index cellIdx at the given step, 
+	 * without evolving the Automaton (see getStates).
+	 * @param stepNum
+	 * @param cellIdx
+	 * @return
+	 * @throws InvalidStepNumException
+	 */
+	public CellState getState(int stepNum, int cellIdx) throws InvalidStepNumException {
+		return getStates(stepNum, cellIdx, cellIdx + 1)[0];
+	}
+	
+	/**
+	 * Return the states of the Cells with indices from fromIdx (inclusive) 
+	 * to toIdx (exclusive) at the given step, without evolving the Automaton.
+	 * Starting from the closest earlier step that is stored, only the light 
+	 * cone of the range is evolved: the Cells within radius * t of it, t 
+	 * steps before (see Rule.evolveCone). Under FixedBoundaryConditions the window is clipped at the ends,
+	 * and under CircularBoundaryConditions it wraps around; under other 
+	 * boundary conditions, or if the window covers every Cell, whole 
+	 * Generations are evolved. A query t steps ahead thus costs time 
+	 * proportional to t * t rather than to t times the number of Cells.
+	 * If the range is invalid, throw an IllegalArgumentException.
+	 * @param stepNum
+	 * @param fromIdx
+	 * @param toIdx
+	 * @return
+	 * @throws InvalidStepNumException
+	 */
+	public CellState[] getStates(int stepNum, int fromIdx, int toIdx) throws InvalidStepNumException {
+		if(stepNum < 0)
+			throw new InvalidStepNumException();
+		if(fromIdx < 0 || toIdx > this.current.size() || fromIdx > toIdx)
+			throw new IllegalArgumentException("Invalid cell range: " + fromIdx + " to " + toIdx);
+		if(this.cycleStart >= 0 && stepNum > this.cycleEnd)
+			stepNum = cycleStep(stepNum);
+		
+		int step;
+		Generation gen;
+		if(stepNum >= this.totalSteps) {
+			step = this.totalSteps;
+			gen = this.current;
+		}
+		else if(this.generations.get(stepNum) != null) {
+			step = stepNum;
+			gen = this.generations.get(stepNum);
+		}
+		else {
+			step = this.generations.floorStep(stepNum);
+			gen = this.generations.get(step);
+			if(this.recomputed != null && this.recomputedStep > step && this.recomputedStep <= stepNum) {
+				step = this.recomputedStep;
+				gen = this.recomputed;
+			}
+		}
+		
+		Generation window = evolveCone(gen, stepNum - step, fromIdx, toIdx);
+		CellState[] states = new CellState[toIdx - fromIdx];
+		for(int i = 0; i < states.length; ++i) {
+			states[i] = window.getState(i);
+		}
+		return states;
+	}
+	
+	/**
+	 * Evolve the light cone of the Cells with indices from fromIdx to toIdx 
+	 * for numSteps steps (see Rule.evolveCone), or whole Generations if the 
+	 * cone cannot be evolved on its own, and return the states of those 
+	 * Cells as a Generation of toIdx - fromIdx Cells.
+	 * @param gen
+	 * @param numSteps
+	 * @param fromIdx
+	 * @param toIdx
+	 * @return
+	 */
+	private Generation evolveCone(Generation gen, int numSteps, int fromIdx, int toIdx) {
+		if(numSteps == 0 || fromIdx == toIdx)
+			return gen.range(fromIdx, toIdx);
+		Generation window = this.rule.evolveCone(gen, this.bc, numSteps, fromIdx, toIdx, false);
+		if(window != null)
+			return window;
+		for(int i = 0; i < numSteps; ++i) {
+			gen = this.rule.evolve(gen, this.bc, false, this.pool, this.parallelThreshold);
+		}
+		return gen.range(fromIdx, toIdx);
+	}
+	
+	/**
+	 * Return the Generation of a step that the Automaton has already reached.
+	 * If the history no longer retains it, recompute it by evolving forward 
+	 * from the closest earlier retained step (or from the last recomputed 
+	 * step, if that is closer).
+	 * @param stepNum a step number between 0 and getTotalSteps()
+	 * @return
+	 */
+	private Generation generationAt(int stepNum) {
+		if(this.cycleStart >= 0 && stepNum > this.cycleEnd)
+			stepNum = cycleStep(stepNum);
+		if(stepNum == this.totalSteps) {
+			this.historyHits++;
+			return this.current;
+		}
+		Generation gen = this.generations.get(stepNum);
+		if(gen != null) {
+			this.historyHits++;
+			return gen;
+		}
+		
+		this.historyRecomputes++;
+		int step = this.generations.floorStep(stepNum);
+		gen = this.generations.get(step);
+		if(this.recomputed != null && this.recomputedStep > step && this.recomputedStep <= stepNum) {
+			step = this.recomputedStep;
+			gen = this.recomputed;
+		}
+		if(this.macrocellEngine != null) {
+			gen = this.macrocellEngine.advance(gen, stepNum - step);
+		}
+		else if(this.blockSteps > 1) {
+			gen = this.rule.evolve(gen, this.bc, this.subruleTracking, stepNum - step, this.blockSteps, this.blockCells);
+		}
+		else {
+			for(; step < stepNum; ++step) {
+				gen = evolveStep(gen);
+			}
+		}
+		this.recomputedStep = stepNum;
+		this.recomputed = gen;
+		return gen;
+	}
+	
 	/**
 	 * Return boundary conditions
 	 * @return
@@ -86,31 +303,457 @@ public class Automaton {
 	}
 	
 	/**
-	 * Evolve the Automaton a given number of steps, appending each successive Generation 
-	 * to the generations List. If the number of steps is less than or equal to 0, 
-	 * leave the Automaton unchanged.
+	 * Return whether evolved Generations record the subrule number of each Cell.
+	 * @return
+	 */
+	public boolean isSubruleTracking() {
+		return this.subruleTracking;
+	}
+	
+	/**
+	 * Turn the recording of subrule numbers on or off for Generations evolved
+	 * from now on. With tracking off, the Cells of evolved Generations are 
+	 * regular Cells rather than EvolvedCells, and each step allocates only
+	 * the packed states of the next Generation.
+	 * @param subruleTracking
+	 */
+	public void setSubruleTracking(boolean subruleTracking) {
+		this.subruleTracking = subruleTracking;
+	}
+	
+	/**
+	 * Evolve each Generation in stripes of at least threshold Cells, 
+	 * concurrently on the given pool. The Generations are identical to 
+	 * those of sequential evolution. Pass a null pool to evolve sequentially.
+	 * @param pool
+	 * @param threshold
+	 */
+	public void setParallelism(ForkJoinPool pool, int threshold) {
+		if(threshold < 1)
+			throw new IllegalArgumentException("threshold must be at least 1.");
+		this.pool = pool;
+		this.parallelThreshold = threshold;
+	}
+	
+	ForkJoinPool getPool() {
+		return this.pool;
+	}
+	
+	int getParallelThreshold() {
+		return this.parallelThreshold;
+	}
+	
+	/**
+	 * Evolve with a memoized macrocell engine (see MacrocellEngine) that keeps 
+	 * at most maxCacheSize nodes and results. The engine lets evolve, and so 
+	 * getGeneration, jump over many steps at once without producing the 
+	 * Generations in between, so the history must not have to retain every
+	 * step: call setRetentionPolicy first. If the history retains every 
+	 * step, as the default one does, the engine could never be used, so 
+	 * throw an IllegalStateException. While an EvolutionListener is 
+	 * registered, evolve produces every step and the engine is only used to 
+	 * recompute steps the history has dropped. Jumped-to Generations do not 
+	 * record subrule numbers. Only CircularBoundaryConditions and 
+	 * FixedBoundaryConditions are supported. Pass 0 to stop using the engine.
+	 * @param maxCacheSize
+	 */
+	public void setMemoizedEvolution(int maxCacheSize) {
+		if(maxCacheSize <= 0) {
+			this.macrocellEngine = null;
+			return;
+		}
+		if(this.generations.retainsEveryStep())
+			throw new IllegalStateException("Memoized evolution needs a history that does not retain every step; "
+					+ "call setRetentionPolicy first.");
+		this.macrocellEngine = new MacrocellEngine(this.rule, this.bc, maxCacheSize);
+	}
+	
+	/**
+	 * Evolve with temporal blocking (see Rule.evolve(Generation, 
+	 * BoundaryConditions, boolean, int, int, int)): each tile of tileCells 
+	 * Cells is evolved through up to stepsPerTile steps while it is in 
+	 * cache, which makes long runs on wide lattices much less bound by 
+	 * memory bandwidth. When the history does not have to retain every 
+	 * step and no EvolutionListener is registered, evolve skips producing 
+	 * the Generations in between; otherwise every tile also writes its 
+	 * Cells of each step (see Rule.evolveSteps), and the Generations are 
+	 * added to the history, checked for cycles and passed to the listeners
+	 * one at a time as usual. Blocking is also used to recompute steps the
+	 * history has dropped. The Generations are identical to those of 
+	 * step-by-step evolution. Pass a stepsPerTile of 1 or less to turn 
+	 * blocking off.
+	 * @param stepsPerTile
+	 * @param tileCells
+	 */
+	public void setTemporalBlocking(int stepsPerTile, int tileCells) {
+		if(stepsPerTile > 1 && tileCells < 1)
+			throw new IllegalArgumentException("tileCells must be at least 1.");
+		this.blockSteps = stepsPerTile;
+		this.blockCells = tileCells;
+	}
+	
+	/**
+	 * Turn cycle detection on or off. With detection on, the Automaton 
+	 * notices when a Generation repeats an earlier one; from then on, it 
+	 * stops evolving and storing Generations, and every later step is 
+	 * answered from the stored period without evolving. Detection is off 
+	 * by default. It is safe under CircularBoundaryConditions and 
+	 * FixedBoundaryConditions, where the next Generation depends only on 
+	 * the current one, but must not be turned on for boundary conditions 
+	 * that have mutable state.
+	 * @param cycleDetection
+	 */
+	public void setCycleDetection(boolean cycleDetection) {
+		this.cycleDetection = cycleDetection;
+		resetProbe();
+	}
+	
+	public boolean isCycleDetection() {
+		return this.cycleDetection;
+	}
+	
+	/**
+	 * Return the first step of the cycle the Automaton has entered 
+	 * (i.e., the length of the transient before it), or -1 if no cycle 
+	 * has been found yet.
+	 * @return
+	 */
+	public int getCycleStart() {
+		return this.cycleStart;
+	}
+	
+	/**
+	 * Return the number of steps after which the Generations repeat, 
+	 * or 0 if no cycle has been found yet.
+	 * @return
+	 */
+	public int getCyclePeriod() {
+		return this.cyclePeriod;
+	}
+	
+	/**
+	 * Return the metrics that record how this Automaton evolves and how 
+	 * long it is measured.
+	 * @return
+	 */
+	public AutomatonMetrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * Return the Generation produced by the last evolution step.
+	 * @return
+	 */
+	Generation getCurrent() {
+		return this.current;
+	}
+	
+	/**
+	 * Return the last step stored before the cycle was found, 
+	 * or 0 if no cycle has been found yet.
+	 * @return
+	 */
+	int getCycleEnd() {
+		return this.cycleEnd;
+	}
+	
+	/**
+	 * Replace the state of the Automaton with one saved in a checkpoint 
+	 * (see AutomatonCheckpoint).
+	 * @param history
+	 * @param totalSteps
+	 * @param current
+	 * @param cycleStart
+	 * @param cyclePeriod
+	 * @param cycleEnd
+	 */
+	void restore(GenerationHistory history, int totalSteps, Generation current, 
+			int cycleStart, int cyclePeriod, int cycleEnd) {
+		this.generations = history;
+		this.totalSteps = totalSteps;
+		this.current = current;
+		this.cycleStart = cycleStart;
+		this.cyclePeriod = cyclePeriod;
+		this.cycleEnd = cycleEnd;
+		this.recomputedStep = -1;
+		this.recomputed = null;
+		resetProbe();
+	}
+	
+	/**
+	 * Map a step after cycleEnd onto the step between cycleStart + 1 and 
+	 * cycleStart + cyclePeriod that has the same Generation. That range is 
+	 * used rather than the one starting at cycleStart so that the mapped 
+	 * step was also evolved from a Generation in the cycle, and its subrule 
+	 * numbers are the same.
+	 * @param stepNum
+	 * @return
+	 */
+	private int cycleStep(int stepNum) {
+		return this.cycleStart + 1 + (stepNum - this.cycleStart - 1) % this.cyclePeriod;
+	}
+	
+	private void resetProbe() {
+		this.probe = this.current;
+		this.probeStep = this.totalSteps;
+		this.probePower = 1;
+	}
+	
+	/**
+	 * Compare the current Generation with the probe. If they are equal, 
+	 * the distance between them is the period of the cycle; find its first 
+	 * step by comparing the Generations of steps i and i + period from 
+	 * step 0 until they are equal.
+	 */
+	private void detectCycle() {
+		int distance = this.totalSteps - this.probeStep;
+		if(!this.current.equals(this.probe)) {
+			if(distance >= this.probePower) {
+				this.probe = this.current;
+				this.probeStep = this.totalSteps;
+				this.probePower *= 2;
+			}
+			return;
+		}
+		
+		Generation first = generationAt(0);
+		Generation second = generationAt(distance);
+		int start = 0;
+		while(!first.equals(second)) {
+			first = nextStored(first, start);
+			second = nextStored(second, start + distance);
+			start++;
+		}
+		this.cycleStart = start;
+		this.cyclePeriod = distance;
+		this.cycleEnd = this.totalSteps;
+		this.probe = null;
+	}
+	
+	/**
+	 * Return the Generation of step stepNum + 1, given that of stepNum, from 
+	 * the history if it is retained and by evolving otherwise.
+	 * @param gen
+	 * @param stepNum
+	 * @return
+	 */
+	private Generation nextStored(Generation gen, int stepNum) {
+		Generation next = this.generations.get(stepNum + 1);
+		if(next != null)
+			return next;
+		return this.rule.evolve(gen, this.bc, false, this.pool, this.parallelThreshold);
+	}
+	
+	/**
+	 * Apply the rule once to a Generation with the settings of this Automaton.
+	 * @param gen
+	 * @return
+	 */
+	private Generation evolveStep(Generation gen) {
+		return this.rule.evolve(gen, this.bc, this.subruleTracking, this.pool, this.parallelThreshold);
+	}
+	
+	/**
+	 * Keep only a bounded part of the history from now on: a keyframe every
+	 * keyframeInterval steps plus the windowSize most recent Generations, 
+	 * within roughly memoryBudget bytes. Steps that are dropped are 
+	 * recomputed from the closest keyframe when getGeneration asks for them.
+	 * @param keyframeInterval
+	 * @param windowSize
+	 * @param memoryBudget the number of bytes, or Long.MAX_VALUE for no limit
+	 */
+	public void setRetentionPolicy(int keyframeInterval, int windowSize, long memoryBudget) {
+		setGenerationHistory(new CheckpointHistory(keyframeInterval, windowSize, memoryBudget));
+	}
+	
+	/**
+	 * Store the Generations in the given empty history from now on, such as 
+	 * a FileHistory to keep them on disk instead of on the heap. The steps 
+	 * the Automaton has already stored are copied into it; if it retains 
+	 * every step, those the current history has dropped are recomputed.
+	 * A history that retains every step cannot be used with memoized 
+	 * evolution (see setMemoizedEvolution).
+	 * @param history
+	 */
+	public void setGenerationHistory(GenerationHistory history) {
+		if(history.size() != 0)
+			throw new IllegalArgumentException("The history must be empty.");
+		if(this.macrocellEngine != null && history.retainsEveryStep())
+			throw new IllegalArgumentException("Memoized evolution needs a history that does not retain every step.");
+		int lastStored = this.cycleStart >= 0 ? this.cycleEnd : this.totalSteps;
+		for(int i = 0; i <= lastStored; ++i) {
+			Generation gen = history.retainsEveryStep() ? generationAt(i) : this.generations.get(i);
+			if(gen != null)
+				history.add(i, gen);
+		}
+		this.generations = history;
+		this.recomputedStep = -1;
+		this.recomputed = null;
+	}
+	
+	/**
+	 * Return the object that stores the Generations of the Automaton.
+	 * @return
+	 */
+	public GenerationHistory getGenerationHistory() {
+		return this.generations;
+	}
+	
+	/**
+	 * Return the number of getGeneration calls answered by a retained Generation.
+	 * @return
+	 */
+	public long getHistoryHits() {
+		return this.historyHits;
+	}
+	
+	/**
+	 * Return the number of getGeneration calls that had to recompute a 
+	 * Generation the history no longer retained.
+	 * @return
+	 */
+	public long getHistoryRecomputes() {
+		return this.historyRecomputes;
+	}
+	
+	/**
+	 * Register a listener to be notified of every Generation evolved from now on.
+	 * @param listener
+	 */
+	public void addEvolutionListener(EvolutionListener listener) {
+		this.listeners.add(listener);
+	}
+	
+	public void removeEvolutionListener(EvolutionListener listener) {
+		this.listeners.remove(listener);
+	}
+	
+	/**
+	 * Evolve the Automaton a given number of steps, adding each successive Generation 
+	 * to the history. If the number of steps is less than or equal to 0, 
+	 * leave the Automaton unchanged. Once a cycle has been found, nothing 
+	 * is evolved or added: the steps are mapped onto the stored period.
 	 * @param numSteps
 	 */
 	public void evolve(int numSteps) {
 		
 		if (numSteps <= 0)
 			System.out.println("The number of steps is less than or equal to 0");
+		else if (this.cycleStart >= 0)
+			evolveInCycle(numSteps);
+		else if (numSteps > 1 && this.macrocellEngine != null 
+				&& !this.generations.retainsEveryStep() && this.listeners.isEmpty()) {
+			long start = System.nanoTime();
+			this.current = this.macrocellEngine.advance(this.current, numSteps);
+			this.totalSteps += numSteps;
+			this.generations.add(this.totalSteps, this.current);
+			resetProbe();
+			this.metrics.recordSteps(numSteps, this.current.size(), System.nanoTime() - start);
+		}
+		else if (numSteps > 1 && this.blockSteps > 1 
+				&& !this.generations.retainsEveryStep() && this.listeners.isEmpty()) {
+			long start = System.nanoTime();
+			this.current = this.rule.evolve(this.current, this.bc, this.subruleTracking, 
+					numSteps, this.blockSteps, this.blockCells);
+			this.totalSteps += numSteps;
+			this.generations.add(this.totalSteps, this.current);
+			resetProbe();
+			this.metrics.recordSteps(numSteps, this.current.size(), System.nanoTime() - start);
+		}
 		else {
-			int length = generations.size();
-			for(int i = (length - 1); i < (length - 1 + numSteps); ++i) {
-				Generation newGeneration = this.rule.evolve(generations.get(i), this.bc);
-				this.generations.add(newGeneration);
+			// With temporal blocking, up to blockSteps Generations are evolved 
+			// at once and then added one at a time.
+			Generation[] block = null;
+			int next = 0;
+			for(int i = 0; i < numSteps; ++i) {
+				if(this.cycleStart >= 0) {
+					evolveInCycle(numSteps - i);
+					break;
+				}
+				long start = System.nanoTime();
+				Generation previous = this.current;
+				Generation newGeneration;
+				if(numSteps > 1 && this.blockSteps > 1) {
+					if(block == null || next == block.length) {
+						block = this.rule.evolveSteps(previous, this.bc, this.subruleTracking, 
+								Math.min(this.blockSteps, numSteps - i), this.blockCells);
+						next = 0;
+					}
+					newGeneration = block[next++];
+				}
+				else
+					newGeneration = evolveStep(previous);
+				this.totalSteps++;
+				this.current = newGeneration;
+				this.generations.add(this.totalSteps, newGeneration);
+				if(this.cycleDetection && this.cycleStart < 0)
+					detectCycle();
+				this.metrics.recordSteps(1, newGeneration.size(), System.nanoTime() - start);
+				for (int j = 0; j < this.listeners.size(); ++j) {
+					this.listeners.get(j).generationEvolved(this, this.totalSteps, previous, newGeneration);
+				}
 			}
 		}
 	}
 	
+	/**
+	 * Advance a given number of steps after a cycle has been found, taking
+	 * each Generation from the stored period. Listeners are still notified 
+	 * of every step; without listeners, the steps are skipped at once.
+	 * @param numSteps
+	 */
+	private void evolveInCycle(int numSteps) {
+		if(this.listeners.isEmpty()) {
+			long start = System.nanoTime();
+			this.totalSteps += numSteps;
+			this.current = generationAt(cycleStep(this.totalSteps));
+			this.metrics.recordSteps(numSteps, this.current.size(), System.nanoTime() - start);
+			return;
+		}
+		for(int i = 0; i < numSteps; ++i) {
+			long start = System.nanoTime();
+			Generation previous = this.current;
+			this.totalSteps++;
+			this.current = generationAt(cycleStep(this.totalSteps));
+			this.metrics.recordSteps(1, this.current.size(), System.nanoTime() - start);
+			for (int j = 0; j < this.listeners.size(); ++j) {
+				this.listeners.get(j).generationEvolved(this, this.totalSteps, previous, this.current);
+			}
+		}
+	}
+	
+	/**
+	 * Return a publisher of the numSteps Generations that follow the 
+	 * current one, which evolves ahead of its subscribers by at most 
+	 * bufferSize Generations, rounded up to a power of two (see 
+	 * GenerationPublisher). The publisher does not evolve this Automaton.
+	 * Call start on it once the subscribers have subscribed.
+	 * @param numSteps
+	 * @param bufferSize
+	 * @param executor the executor that delivers to subscribers
+	 * @return
+	 */
+	public GenerationPublisher publish(int numSteps, int bufferSize, Executor executor) {
+		return new GenerationPublisher(this, numSteps, bufferSize, executor);
+	}
+	
+	/**
+	 * Return a publisher as above that delivers on the common ForkJoinPool.
+	 * @param numSteps
+	 * @param bufferSize
+	 * @return
+	 */
+	public GenerationPublisher publish(int numSteps, int bufferSize) {
+		return publish(numSteps, bufferSize, ForkJoinPool.commonPool());
+	}
+	
 	/**
 	 * Return the total number of steps that the Automaton has evolved.
 	 * @return
 	 */
 	public int getTotalSteps() {
 		try {
-			return this.generations.size() - 1;
+			return this.totalSteps;
 		}
 		catch(NullPointerException e) {
 			System.out.println("Automaton getTotalSteps");
@@ -123,7 +766,7 @@ public class Automaton {
 	 */
 	public String toString() {
 		try {
-			Generation currGeneration = generations.get(getTotalSteps());
+			Generation currGeneration = this.current;
 			return currGeneration.toString();
 		}
 		catch(NullPointerException e) {
@@ -141,14 +784,119 @@ public class Automaton {
 	public String getHistory() {
 		
 		StringBuilder str = new StringBuilder();
-		for (int i = 0; i < this.generations.size(); ++i) {
-			str.append(this.generations.get(i).toString());
-			str.append("\n");
+		try {
+			writeHistory(str);
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
 		}
-		// Remove the last "\n"
-		str.deleteCharAt(str.length() - 1);
 		return str.toString();
 	}
+	
+	/**
+	 * Write the entire evolution of the Automaton, in the same form as 
+	 * getHistory, to the given Appendable (such as a Writer), without 
+	 * building it in memory first.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeHistory(Appendable out) throws IOException {
+		writeHistory(out, 0, this.totalSteps + 1, 0, this.current.size());
+	}
+	
+	/**
+	 * Write the representations of the Generations of steps fromStep 
+	 * (inclusive) to toStep (exclusive), restricted to the Cells with indices 
+	 * from fromIdx (inclusive) to toIdx (exclusive), joined by newline 
+	 * characters. If the Automaton has not evolved this far, first call the 
+	 * evolve method with the necessary number of steps. The rows are built 
+	 * in one reused buffer, so the memory used does not depend on the number 
+	 * of steps. If either range is invalid, throw an IllegalArgumentException.
+	 * @param out
+	 * @param fromStep
+	 * @param toStep
+	 * @param fromIdx
+	 * @param toIdx
+	 * @throws IOException
+	 */
+	public void writeHistory(Appendable out, int fromStep, int toStep, int fromIdx, int toIdx) throws IOException {
+		prepareHistory(fromStep, toStep, fromIdx, toIdx);
+		int width = toIdx - fromIdx;
+		char[] buffer = new char[Math.max(HISTORY_BUFFER_SIZE, width + 1)];
+		int pos = 0;
+		for(int i = fromStep; i < toStep; ++i) {
+			if(pos + width + 1 > buffer.length) {
+				appendChars(out, buffer, pos);
+				pos = 0;
+			}
+			if(i > fromStep)
+				buffer[pos++] = '\n';
+			generationAt(i).writeChars(fromIdx, toIdx, buffer, pos);
+			pos += width;
+		}
+		appendChars(out, buffer, pos);
+	}
+	
+	/**
+	 * Write the same characters as writeHistory(Appendable, int, int, int, int)
+	 * to the given channel, as ASCII bytes.
+	 * @param out
+	 * @param fromStep
+	 * @param toStep
+	 * @param fromIdx
+	 * @param toIdx
+	 * @throws IOException
+	 */
+	public void writeHistory(WritableByteChannel out, int fromStep, int toStep, int fromIdx, int toIdx) throws IOException {
+		prepareHistory(fromStep, toStep, fromIdx, toIdx);
+		int width = toIdx - fromIdx;
+		ByteBuffer buffer = ByteBuffer.allocate(Math.max(HISTORY_BUFFER_SIZE, width + 1));
+		byte[] bytes = buffer.array();
+		int pos = 0;
+		for(int i = fromStep; i < toStep; ++i) {
+			if(pos + width + 1 > bytes.length) {
+				writeBytes(out, buffer, pos);
+				pos = 0;
+			}
+			if(i > fromStep)
+				bytes[pos++] = '\n';
+			generationAt(i).writeBytes(fromIdx, toIdx, bytes, pos);
+			pos += width;
+		}
+		writeBytes(out, buffer, pos);
+	}
+	
+	/**
+	 * Check the ranges of a history export, and evolve up to its last step.
+	 * @param fromStep
+	 * @param toStep
+	 * @param fromIdx
+	 * @param toIdx
+	 */
+	private void prepareHistory(int fromStep, int toStep, int fromIdx, int toIdx) {
+		if(fromStep < 0 || fromStep > toStep)
+			throw new IllegalArgumentException("Invalid step range: " + fromStep + " to " + toStep);
+		if(fromIdx < 0 || toIdx > this.current.size() || fromIdx > toIdx)
+			throw new IllegalArgumentException("Invalid cell range: " + fromIdx + " to " + toIdx);
+		if(toStep - 1 > this.totalSteps)
+			evolve(toStep - 1 - this.totalSteps);
+	}
+	
+	private static void appendChars(Appendable out, char[] buffer, int length) throws IOException {
+		if(out instanceof Writer)
+			((Writer) out).write(buffer, 0, length);
+		else if(out instanceof StringBuilder)
+			((StringBuilder) out).append(buffer, 0, length);
+		else
+			out.append(CharBuffer.wrap(buffer, 0, length));
+	}
+	
+	private static void writeBytes(WritableByteChannel out, ByteBuffer buffer, int length) throws IOException {
+		buffer.clear().limit(length);
+		while(buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
 }
 
 
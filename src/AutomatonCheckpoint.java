@@ -0,0 +1,435 @@
+/**
+ * This is a utility class that saves a running Automaton to a compact
+ * binary checkpoint and loads it back, so a long evolution can continue
+ * where it stopped instead of being replayed from the initial Generation.
+ *
+ * A checkpoint holds the Rule, the BoundaryConditions, the number of steps
+ * evolved, the cycle found so far (see Automaton.setCycleDetection), the
+ * kind of history, every Generation the history retains, and the current
+ * Generation. Generations are written as their packed words, 64 Cells to
+ * a long, followed by their subrule numbers if they were recorded, so
+ * loading a checkpoint is mostly bulk copying.
+ *
+ * The format starts with the magic number and a version number, which 
+ * is incremented whenever the layout changes; checkpoints of every 
+ * earlier version can still be loaded. All numbers are big-endian, except
+ * the packed words of the Generations, which are little-endian. Only 
+ * ElementaryRule, TotalisticRule and their general-radius versions, only 
+ * CircularBoundaryConditions and FixedBoundaryConditions, and only 
+ * ListHistory, CheckpointHistory and DeltaHistory can be saved, and not 
+ * their subclasses, whose state the format cannot represent. A 
+ * DeltaHistory is saved as it is stored, as keyframes and deltas. A 
+ * FileHistory is already on disk and is not copied into a checkpoint.
+ * The pool, the memoized engine and the listeners of the Automaton are not
+ * saved; they must be set again after loading.
+ * @author User
+ *
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class AutomatonCheckpoint {
+
+	private static final int MAGIC = 0x43414350;
+	private static final int VERSION = 3;
+
+	private static final int ELEMENTARY_RULE = 1;
+	private static final int TOTALISTIC_RULE = 2;
+	private static final int GENERAL_ELEMENTARY_RULE = 3;
+	private static final int GENERAL_TOTALISTIC_RULE = 4;
+
+	private static final int NO_SUBRULES = 0;
+	private static final int BYTE_SUBRULES = 1;
+	private static final int INT_SUBRULES = 2;
+
+	private static final int CIRCULAR_BOUNDARY = 1;
+	private static final int FIXED_BOUNDARY = 2;
+
+	private static final int LIST_HISTORY = 1;
+	private static final int CHECKPOINT_HISTORY = 2;
+	private static final int DELTA_HISTORY = 3;
+
+	/**
+	 * Save the Automaton to the given file, replacing it if it exists.
+	 * @param a
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void save(Automaton a, File file) throws IOException {
+		try(OutputStream out = new FileOutputStream(file)) {
+			save(a, out);
+		}
+	}
+
+	/**
+	 * Write a checkpoint of the Automaton to the given stream. The stream is
+	 * flushed but not closed. If the Rule, the BoundaryConditions or the
+	 * history cannot be saved, throw an IllegalArgumentException.
+	 * @param a
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void save(Automaton a, OutputStream out) throws IOException {
+		int ruleType = ruleType(a.getRule());
+		BoundaryConditions bc = a.getBoundaryConditions();
+		int bcType = boundaryType(bc);
+		GenerationHistory history = a.getGenerationHistory();
+		int lastStored = a.getCycleStart() >= 0 ? a.getCycleEnd() : a.getTotalSteps();
+		int historyType = historyType(history);
+		int count = 0;
+		if(historyType == DELTA_HISTORY)
+			count = lastStored + 1;
+		else {
+			for(int i = 0; i <= lastStored; ++i) {
+				if(history.get(i) != null)
+					count++;
+				else if(historyType == LIST_HISTORY)
+					throw new IllegalArgumentException("Unsupported history: " + history);
+			}
+		}
+
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		writeRule(data, ruleType, a.getRule());
+		data.writeByte(bcType);
+		if(bcType == FIXED_BOUNDARY) {
+			FixedBoundaryConditions fixed = (FixedBoundaryConditions) bc;
+			data.writeByte(fixed.getLeftState().ordinal());
+			data.writeByte(fixed.getRightState().ordinal());
+		}
+		data.writeInt(a.getTotalSteps());
+		data.writeBoolean(a.isSubruleTracking());
+		data.writeBoolean(a.isCycleDetection());
+		data.writeInt(a.getCycleStart());
+		data.writeInt(a.getCyclePeriod());
+		data.writeInt(a.getCycleEnd());
+		data.writeByte(historyType);
+		if(historyType == CHECKPOINT_HISTORY) {
+			CheckpointHistory checkpoints = (CheckpointHistory) history;
+			data.writeInt(checkpoints.getKeyframeInterval());
+			data.writeInt(checkpoints.getWindowSize());
+			data.writeLong(checkpoints.getMemoryBudget());
+		}
+		else if(historyType == DELTA_HISTORY) {
+			data.writeInt(((DeltaHistory) history).getKeyframeInterval());
+		}
+
+		Generation current = a.getCurrent();
+		data.writeInt(current.size());
+		data.writeInt(count);
+		byte[] buffer = new byte[8 * current.getWordCount() + current.size()];
+		if(historyType == DELTA_HISTORY)
+			writeDeltas(data, (DeltaHistory) history, count, buffer);
+		else {
+			for(int i = 0; i <= lastStored; ++i) {
+				Generation gen = history.get(i);
+				if(gen != null) {
+					data.writeInt(i);
+					writeGeneration(data, gen, buffer);
+				}
+			}
+		}
+		writeGeneration(data, current, buffer);
+		data.flush();
+	}
+
+	/**
+	 * Write how the subrule numbers were recorded (NO_SUBRULES, 
+	 * BYTE_SUBRULES or INT_SUBRULES), the packed words, and the subrule 
+	 * numbers if there are any. Version 1 wrote a boolean in place of the 
+	 * kind, which reads as NO_SUBRULES or BYTE_SUBRULES.
+	 * @param data
+	 * @param gen
+	 * @param buffer a buffer large enough for the words and a byte per Cell
+	 * @throws IOException
+	 */
+	private static void writeGeneration(DataOutputStream data, Generation gen, byte[] buffer) throws IOException {
+		ByteBuffer buf = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+		for(int w = 0; w < gen.getWordCount(); ++w) {
+			buf.putLong(gen.getWord(w));
+		}
+		boolean wide = gen.hasWideSubrules();
+		if(gen.hasSubrules() && !wide) {
+			for(int i = 0; i < gen.size(); ++i) {
+				buf.put((byte) gen.getSubruleNum(i));
+			}
+		}
+		data.writeByte(wide ? INT_SUBRULES : gen.hasSubrules() ? BYTE_SUBRULES : NO_SUBRULES);
+		data.write(buffer, 0, buf.position());
+		if(wide) {
+			for(int i = 0; i < gen.size(); ++i) {
+				data.writeInt(gen.getSubruleNum(i));
+			}
+		}
+	}
+
+	/**
+	 * Write the first count steps of a DeltaHistory as they are stored: 
+	 * the keyframes as Generations, and every other step as the length and
+	 * longs of its delta, followed by the length and bytes of its subrule 
+	 * delta, or -1 if it has none.
+	 * @param data
+	 * @param history
+	 * @param count
+	 * @param buffer
+	 * @throws IOException
+	 */
+	private static void writeDeltas(DataOutputStream data, DeltaHistory history, int count, byte[] buffer) 
+			throws IOException {
+		for(int i = 0; i < count; ++i) {
+			if(history.isKeyframe(i)) {
+				writeGeneration(data, history.get(i), buffer);
+				continue;
+			}
+			long[] delta = history.getDelta(i);
+			data.writeInt(delta.length);
+			for(long word : delta) {
+				data.writeLong(word);
+			}
+			byte[] subruleDelta = history.getSubruleDelta(i);
+			data.writeInt(subruleDelta == null ? -1 : subruleDelta.length);
+			if(subruleDelta != null)
+				data.write(subruleDelta);
+		}
+	}
+
+	/**
+	 * Load an Automaton from the given file.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static Automaton load(File file) throws IOException {
+		try(InputStream in = new FileInputStream(file)) {
+			return load(in);
+		}
+	}
+
+	/**
+	 * Read a checkpoint from the given stream and return an Automaton in the
+	 * same state as the one that was saved. Evolving it produces the same
+	 * Generations the saved Automaton would have produced. If the stream is
+	 * not a checkpoint of a supported version, throw an IOException.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static Automaton load(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		if(data.readInt() != MAGIC)
+			throw new IOException("Not an automaton checkpoint.");
+		int version = data.readInt();
+		if(version < 1 || version > VERSION)
+			throw new IOException("Unsupported checkpoint version: " + version);
+
+		Rule rule = readRule(data);
+		BoundaryConditions bc = readBoundaryConditions(data);
+		int totalSteps = data.readInt();
+		boolean subruleTracking = data.readBoolean();
+		boolean cycleDetection = data.readBoolean();
+		int cycleStart = data.readInt();
+		int cyclePeriod = data.readInt();
+		int cycleEnd = data.readInt();
+		int historyType = data.readByte();
+		GenerationHistory history;
+		if(historyType == LIST_HISTORY)
+			history = new ListHistory();
+		else if(historyType == CHECKPOINT_HISTORY)
+			history = new CheckpointHistory(data.readInt(), data.readInt(), data.readLong());
+		else if(historyType == DELTA_HISTORY)
+			history = new DeltaHistory(data.readInt());
+		else
+			throw new IOException("Unknown history type: " + historyType);
+
+		int size = data.readInt();
+		int count = data.readInt();
+		if(size < 0 || count < 1)
+			throw new IOException("Corrupt checkpoint.");
+		byte[] buffer = new byte[8 * Generation.wordCount(size) + size];
+		if(historyType == DELTA_HISTORY)
+			readDeltas(data, (DeltaHistory) history, count, size, buffer);
+		else {
+			for(int i = 0; i < count; ++i) {
+				history.add(data.readInt(), readGeneration(data, size, buffer));
+			}
+		}
+		Generation current = readGeneration(data, size, buffer);
+
+		Automaton a = new Automaton(rule, history.get(0), bc);
+		a.setSubruleTracking(subruleTracking);
+		a.setCycleDetection(cycleDetection);
+		a.restore(history, totalSteps, current, cycleStart, cyclePeriod, cycleEnd);
+		return a;
+	}
+
+	private static void readDeltas(DataInputStream data, DeltaHistory history, int count, int size, byte[] buffer) 
+			throws IOException {
+		for(int i = 0; i < count; ++i) {
+			if(history.isKeyframe(i)) {
+				history.add(i, readGeneration(data, size, buffer));
+				continue;
+			}
+			int length = data.readInt();
+			if(length < 0 || length > 2 * Generation.wordCount(size))
+				throw new IOException("Corrupt checkpoint.");
+			long[] delta = new long[length];
+			for(int w = 0; w < length; ++w) {
+				delta[w] = data.readLong();
+			}
+			length = data.readInt();
+			if(length < -1 || length > 1 + 15L * size)
+				throw new IOException("Corrupt checkpoint.");
+			byte[] subruleDelta = null;
+			if(length >= 0) {
+				subruleDelta = new byte[length];
+				data.readFully(subruleDelta);
+			}
+			history.addDelta(delta, subruleDelta);
+		}
+	}
+
+	private static Generation readGeneration(DataInputStream data, int size, byte[] buffer) throws IOException {
+		int kind = data.readByte();
+		if(kind < NO_SUBRULES || kind > INT_SUBRULES)
+			throw new IOException("Corrupt checkpoint.");
+		int wordCount = Generation.wordCount(size);
+		data.readFully(buffer, 0, 8 * wordCount + (kind == BYTE_SUBRULES ? size : 0));
+		ByteBuffer buf = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+		long[] words = new long[wordCount];
+		buf.asLongBuffer().get(words);
+		if((size & 63) != 0)
+			words[wordCount - 1] &= -1L >>> (64 - (size & 63));
+		if(kind == INT_SUBRULES) {
+			int[] subrules = new int[size];
+			for(int i = 0; i < size; ++i) {
+				subrules[i] = data.readInt();
+			}
+			return Generation.withWideSubrules(words, size, subrules);
+		}
+		byte[] subrules = null;
+		if(kind == BYTE_SUBRULES) {
+			subrules = new byte[size];
+			System.arraycopy(buffer, 8 * wordCount, subrules, 0, size);
+		}
+		return new Generation(words, size, subrules);
+	}
+
+	/**
+	 * Write the rule type and rule number, preceded for the general-radius
+	 * rules by the radius, with the full rule number.
+	 * @param data
+	 * @param type
+	 * @param rule
+	 * @throws IOException
+	 */
+	private static void writeRule(DataOutputStream data, int type, Rule rule) throws IOException {
+		data.writeByte(type);
+		if(type == GENERAL_ELEMENTARY_RULE) {
+			byte[] code = ((GeneralElementaryRule) rule).getWolframCode().toByteArray();
+			data.writeByte(rule.getRadius());
+			data.writeInt(code.length);
+			data.write(code);
+		}
+		else if(type == GENERAL_TOTALISTIC_RULE) {
+			data.writeByte(rule.getRadius());
+			data.writeLong(((GeneralTotalisticRule) rule).getCode());
+		}
+		else {
+			data.writeInt(rule.getRuleNum());
+		}
+	}
+
+	private static int historyType(GenerationHistory history) {
+		if(history.getClass() == ListHistory.class)
+			return LIST_HISTORY;
+		if(history.getClass() == CheckpointHistory.class)
+			return CHECKPOINT_HISTORY;
+		if(history.getClass() == DeltaHistory.class)
+			return DELTA_HISTORY;
+		throw new IllegalArgumentException("Unsupported history: " + history.getClass().getName());
+	}
+
+	private static int ruleType(Rule rule) {
+		if(rule.getClass() == ElementaryRule.class)
+			return ELEMENTARY_RULE;
+		if(rule.getClass() == TotalisticRule.class)
+			return TOTALISTIC_RULE;
+		if(rule.getClass() == GeneralElementaryRule.class)
+			return GENERAL_ELEMENTARY_RULE;
+		if(rule.getClass() == GeneralTotalisticRule.class)
+			return GENERAL_TOTALISTIC_RULE;
+		throw new IllegalArgumentException("Unsupported rule: " + rule.getClass().getName());
+	}
+
+	private static Rule readRule(DataInputStream data) throws IOException {
+		int type = data.readByte();
+		try {
+			if(type == ELEMENTARY_RULE)
+				return new ElementaryRule(data.readInt());
+			if(type == TOTALISTIC_RULE)
+				return new TotalisticRule(data.readInt());
+			if(type == GENERAL_ELEMENTARY_RULE) {
+				int radius = data.readByte();
+				if(radius < 0 || radius > GeneralElementaryRule.MAX_RADIUS)
+					throw new IOException("Corrupt checkpoint.");
+				// A code of 2^(2 * radius + 1) bits, plus the sign byte of BigInteger.toByteArray
+				int length = data.readInt();
+				if(length < 1 || length > (1 << (2 * radius + 1)) / 8 + 1)
+					throw new IOException("Corrupt checkpoint.");
+				byte[] code = new byte[length];
+				data.readFully(code);
+				return new GeneralElementaryRule(radius, new BigInteger(code));
+			}
+			if(type == GENERAL_TOTALISTIC_RULE) {
+				int radius = data.readByte();
+				if(radius < 0 || radius > GeneralTotalisticRule.MAX_RADIUS)
+					throw new IOException("Corrupt checkpoint.");
+				return new GeneralTotalisticRule(radius, data.readLong());
+			}
+		}
+		catch(InvalidRuleNumException e) {
+			throw new IOException("Invalid rule number.", e);
+		}
+		throw new IOException("Unknown rule type: " + type);
+	}
+
+	private static int boundaryType(BoundaryConditions bc) {
+		if(bc.getClass() == CircularBoundaryConditions.class)
+			return CIRCULAR_BOUNDARY;
+		if(bc.getClass() == FixedBoundaryConditions.class)
+			return FIXED_BOUNDARY;
+		throw new IllegalArgumentException("Unsupported boundary conditions: " + bc.getClass().getName());
+	}
+
+	private static BoundaryConditions readBoundaryConditions(DataInputStream data) throws IOException {
+		int type = data.readByte();
+		if(type == CIRCULAR_BOUNDARY)
+			return new CircularBoundaryConditions();
+		if(type == FIXED_BOUNDARY) {
+			CellState left = readState(data);
+			CellState right = readState(data);
+			return new FixedBoundaryConditions(left, right);
+		}
+		throw new IOException("Unknown boundary conditions type: " + type);
+	}
+
+	private static CellState readState(DataInputStream data) throws IOException {
+		int ordinal = data.readByte();
+		CellState[] states = CellState.values();
+		if(ordinal < 0 || ordinal >= states.length)
+			throw new IOException("Invalid cell state: " + ordinal);
+		return states[ordinal];
+	}
+}
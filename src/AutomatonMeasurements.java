@@ -1,6 +1,8 @@
 /**
  * This is a utility class used to calculate quantities that characterize 
  * how an automaton evolves. Below are descriptions of the methods.
+ * The methods that take an Automaton record the time they take in its
+ * AutomatonMetrics.
  * @author User
  *
  */
@@ -17,18 +19,32 @@ public class AutomatonMeasurements {
 	 * @return
 	 */
 	public static int hammingDistance(Generation g1, Generation g2) {
-		int count = 0;
 		if(g1.size() != g2.size())
 			throw new IllegalArgumentException("The sizes of the generations are different.");
-		else {
-			String st1 = g1.toString();
-			String st2 = g2.toString();
-			for(int i = 0; i < st1.length(); ++i) {
-				if(st1.charAt(i) != st2.charAt(i))
-					count++;
-			}
-		}
-		return count;
+		return g1.countDifferences(g2, 0, g1.size());
+	}
+	
+	/**
+	 * Calculate the Hamming distance between two generations, counting only
+	 * the cells with indices from fromIdx (inclusive) to toIdx (exclusive). 
+	 * If the sizes of the generations are different or the range is not 
+	 * within them, throw an IllegalArgumentException.
+	 * @param g1
+	 * @param g2
+	 * @param fromIdx
+	 * @param toIdx
+	 * @return
+	 */
+	public static int hammingDistance(Generation g1, Generation g2, int fromIdx, int toIdx) {
+		if(g1.size() != g2.size())
+			throw new IllegalArgumentException("The sizes of the generations are different.");
+		checkRange(g1.size(), fromIdx, toIdx);
+		return g1.countDifferences(g2, fromIdx, toIdx);
+	}
+	
+	private static void checkRange(int size, int fromIdx, int toIdx) {
+		if(fromIdx < 0 || toIdx > size || fromIdx > toIdx)
+			throw new IllegalArgumentException("Invalid cell range: " + fromIdx + " to " + toIdx);
 	}
 	
 	/**
@@ -41,13 +57,24 @@ public class AutomatonMeasurements {
 	 * @throws InvalidStepNumException 
 	 */
 	public static int hammingDistance(int stepNum, Automaton a) throws InvalidStepNumException {
-		int count = 0;
-		if(stepNum > 0) {
-			Generation g1 = a.getGeneration(stepNum);
-			Generation g2 = a.getGeneration(stepNum+1);
-			count = hammingDistance(g1, g2);
+		long start = System.nanoTime();
+		try {
+			int count = 0;
+			GenerationHistory history = a.getGenerationHistory();
+			if(stepNum > 0 && history instanceof DeltaHistory && stepNum + 1 < history.size()) {
+				Generation g = a.getGeneration(0);
+				count = ((DeltaHistory) history).getHammingDistance(stepNum + 1, 0, g.size());
+			}
+			else if(stepNum > 0) {
+				Generation g1 = a.getGeneration(stepNum);
+				Generation g2 = a.getGeneration(stepNum+1);
+				count = hammingDistance(g1, g2);
+			}
+			return count;
+		}
+		finally {
+			a.getMetrics().recordMeasurement(System.nanoTime() - start);
 		}
-		return count;
 	}
 	
 	/**
@@ -59,14 +86,50 @@ public class AutomatonMeasurements {
 	 * @throws InvalidStepNumException 
 	 */
 	public static int[] hammingDistances(Automaton a) throws InvalidStepNumException {
-		int length = a.getTotalSteps();
-		int[] count = new int[length];
-		for(int i = 0; i < length; ++i) {
-			Generation g1 = a.getGeneration(i);
-			Generation g2 = a.getGeneration(i+1);
-			count[i] = hammingDistance(g1, g2);
+		Generation g = a.getGeneration(0);
+		return hammingDistances(a, 0, g.size());
+	}
+	
+	/**
+	 * Calculate the Hamming distance for each pair of successive generations, 
+	 * counting only the cells with indices from fromIdx (inclusive) to toIdx 
+	 * (exclusive). Each generation is fetched once and compared a word of 
+	 * 64 cells at a time. If the Automaton keeps a DeltaHistory, the 
+	 * distances of the steps it stores are read from its deltas instead. 
+	 * If the range is not within the generations, throw an 
+	 * IllegalArgumentException.
+	 * @param a
+	 * @param fromIdx
+	 * @param toIdx
+	 * @return
+	 * @throws InvalidStepNumException 
+	 */
+	public static int[] hammingDistances(Automaton a, int fromIdx, int toIdx) throws InvalidStepNumException {
+		long start = System.nanoTime();
+		try {
+			int length = a.getTotalSteps();
+			int[] count = new int[length];
+			Generation g1 = a.getGeneration(0);
+			checkRange(g1.size(), fromIdx, toIdx);
+			GenerationHistory history = a.getGenerationHistory();
+			DeltaHistory deltas = history instanceof DeltaHistory ? (DeltaHistory) history : null;
+			for(int i = 0; i < length; ++i) {
+				if(deltas != null && i + 1 < deltas.size()) {
+					count[i] = deltas.getHammingDistance(i + 1, fromIdx, toIdx);
+					g1 = null;
+					continue;
+				}
+				if(g1 == null)
+					g1 = a.getGeneration(i);
+				Generation g2 = a.getGeneration(i+1);
+				count[i] = g1.countDifferences(g2, fromIdx, toIdx);
+				g1 = g2;
+			}
+			return count;
+		}
+		finally {
+			a.getMetrics().recordMeasurement(System.nanoTime() - start);
 		}
-		return count;
 	}
 	
 	/**
@@ -82,42 +145,66 @@ public class AutomatonMeasurements {
 	 * @throws InvalidStepNumException 
 	 */
 	public static int[] subruleCount (int stepNum, Automaton a) throws InvalidStepNumException {
-		Rule rule = a.getRule();
+		long start = System.nanoTime();
+		try {
+			if(stepNum >= 0)
+				return subruleCount(a.getRule(), a.getGeneration(stepNum), a.getBoundaryConditions());
+			return new int[a.getRule().getNumSubrules()];
+		}
+		finally {
+			a.getMetrics().recordMeasurement(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Count the number of times each subrule is applied when the given
+	 * Rule evolves the given Generation subject to the given boundary 
+	 * conditions. The counts are indexed by subrule number.
+	 * @param rule
+	 * @param g
+	 * @param bc
+	 * @return
+	 */
+	public static int[] subruleCount(Rule rule, Generation g, BoundaryConditions bc) {
 		int[] count = new int[rule.getNumSubrules()];
-		
-		if(stepNum >= 0) {
-			Generation g = a.getGeneration(stepNum);
-			
-			for(int i = 0; i < g.size(); ++i) {
-				
-				Cell[] neighborhood = rule.getNeighborhood(i, g, a.getBoundaryConditions());
-				char[] ch = new char[neighborhood.length];
-				
-				if(rule.getNumSubrules() == 8) {
-					for (int j = 0; j < neighborhood.length; ++j) {
-						if(neighborhood[j].getState().equals(CellState.OFF))
-							ch[j] = '0';
-						else if(neighborhood[j].getState().equals(CellState.ON))
-							ch[j] = '1';
-					}
-					
-					String str = new String(ch);
-					int subruleNum = Integer.parseInt(str, 2);
-					count[subruleNum]++;
-				}
-				else if(rule.getNumSubrules() == 6){
-					int subruleNum = 0;
-					for (int k = 0; k < neighborhood.length; ++k) {
-						if(neighborhood[k].getState().equals(CellState.ON))
-							subruleNum++;
-					}
-					count[subruleNum]++;
-				}	
-			}
+		for(int i = 0; i < g.size(); ++i) {
+			count[rule.getSubruleNum(i, g, bc)]++;
 		}
 		return count;
 	}
 	
+	/**
+	 * Return the fraction of the Cells of a Generation that are ON.
+	 * @param g
+	 * @return
+	 */
+	public static double density(Generation g) {
+		if(g.size() == 0)
+			return 0;
+		return (double) g.countOn() / g.size();
+	}
+	
+	/**
+	 * Return the number of steps before the Automaton entered a cycle, 
+	 * or -1 if it has not been found to repeat a Generation yet. 
+	 * (See Automaton.setCycleDetection.)
+	 * @param a
+	 * @return
+	 */
+	public static int transientLength(Automaton a) {
+		return a.getCycleStart();
+	}
+	
+	/**
+	 * Return the period of the cycle the Automaton has entered, 
+	 * or 0 if it has not been found to repeat a Generation yet.
+	 * @param a
+	 * @return
+	 */
+	public static int cyclePeriod(Automaton a) {
+		return a.getCyclePeriod();
+	}
+	
 	/**
 	 * Return the subrule counts for every evolution step. 
 	 * The length of the returned array is equal to the total number of steps, 
@@ -127,10 +214,16 @@ public class AutomatonMeasurements {
 	 * @throws InvalidStepNumException 
 	 */
 	public static int[][] subruleCounts (Automaton a) throws InvalidStepNumException{
-		int[][] count = new int[a.getTotalSteps()][a.getRule().getNumSubrules()];
-		for(int i = 0; i < a.getTotalSteps(); ++i) {
-			count[i] = subruleCount(i, a);
+		long start = System.nanoTime();
+		try {
+			int[][] count = new int[a.getTotalSteps()][];
+			for(int i = 0; i < a.getTotalSteps(); ++i) {
+				count[i] = subruleCount(a.getRule(), a.getGeneration(i), a.getBoundaryConditions());
+			}
+			return count;
+		}
+		finally {
+			a.getMetrics().recordMeasurement(System.nanoTime() - start);
 		}
-		return count;
 	}
 }
@@ -0,0 +1,260 @@
+/**
+ * This class records how an Automaton evolves: the number of steps and
+ * Cells evolved, the time each step takes, and the time spent measuring it
+ * with AutomatonMeasurements. Each Automaton has one, which is always on;
+ * recording a step costs two calls of System.nanoTime and a few additions.
+ *
+ * The step times are counted in a histogram of buckets whose widths grow
+ * with the time, 8 buckets for each power of 2, so each bucket is at most
+ * 12.5% as wide as the times it holds. Percentiles are reported as the 
+ * middle of their bucket, so they are accurate to about 6% in constant 
+ * memory. A copy of all the values can be
+ * taken with snapshot, or they can be published as a JMX MXBean with
+ * register; each getter computes only its own value, without copying 
+ * the histogram.
+ *
+ * The metrics are written only by the thread evolving the Automaton,
+ * without synchronization, so reading them from another thread (such as
+ * through JMX) may see values that are slightly out of date.
+ * @author User
+ *
+ */
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class AutomatonMetrics implements AutomatonMetricsMXBean {
+
+	/**
+	 * Times below SMALL_NANOS have a bucket each; above that, each power
+	 * of 2 is split into SUB_BUCKETS buckets.
+	 */
+	private static final int SMALL_NANOS = 16;
+	private static final int SUB_BUCKETS = 8;
+	private static final int BUCKETS = SMALL_NANOS + (63 - 4) * SUB_BUCKETS;
+
+	private Automaton automaton;
+	private ObjectName objectName;
+
+	private long stepsEvolved;
+	private long cellsEvolved;
+	private long evolveNanos;
+	private long maxStepNanos;
+	private long[] stepHistogram = new long[BUCKETS];
+	private long measurementCalls;
+	private long measurementNanos;
+
+	/**
+	 * Construct the metrics of the given Automaton.
+	 * @param automaton
+	 */
+	AutomatonMetrics(Automaton automaton) {
+		this.automaton = automaton;
+	}
+
+	/**
+	 * Record numSteps steps of numCells Cells each, which took nanos
+	 * nanoseconds in total.
+	 * @param numSteps
+	 * @param numCells
+	 * @param nanos
+	 */
+	void recordSteps(int numSteps, int numCells, long nanos) {
+		this.stepsEvolved += numSteps;
+		this.cellsEvolved += (long) numSteps * numCells;
+		this.evolveNanos += nanos;
+		long stepNanos = nanos / numSteps;
+		if(stepNanos > this.maxStepNanos)
+			this.maxStepNanos = stepNanos;
+		this.stepHistogram[bucket(stepNanos)] += numSteps;
+	}
+
+	/**
+	 * Record one AutomatonMeasurements call that took the given time.
+	 * @param nanos
+	 */
+	void recordMeasurement(long nanos) {
+		this.measurementCalls++;
+		this.measurementNanos += nanos;
+	}
+
+	/**
+	 * Return the index of the bucket of a time.
+	 * @param nanos
+	 * @return
+	 */
+	static int bucket(long nanos) {
+		if(nanos < SMALL_NANOS)
+			return (int) Math.max(0, nanos);
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+		return SMALL_NANOS + (exponent - 4) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Return the time in the middle of a bucket.
+	 * @param bucket
+	 * @return
+	 */
+	static long bucketMiddle(int bucket) {
+		if(bucket < SMALL_NANOS)
+			return bucket;
+		int exponent = (bucket - SMALL_NANOS) / SUB_BUCKETS + 4;
+		int sub = (bucket - SMALL_NANOS) % SUB_BUCKETS;
+		long width = 1L << (exponent - 3);
+		return (1L << exponent) + sub * width + width / 2;
+	}
+
+	/**
+	 * Return the time per step below which the given percentage of the
+	 * steps counted in a histogram fall: the middle of the bucket that 
+	 * holds the percentile, but no more than the longest step, or 0 if the
+	 * histogram is empty.
+	 * @param histogram
+	 * @param maxStepNanos
+	 * @param percent a number from 0 to 100
+	 * @return
+	 */
+	static long percentile(long[] histogram, long maxStepNanos, double percent) {
+		if(percent < 0 || percent > 100)
+			throw new IllegalArgumentException("percent must be from 0 to 100.");
+		long total = 0;
+		for(long count : histogram) {
+			total += count;
+		}
+		if(total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(total * percent / 100));
+		long seen = 0;
+		for(int i = 0; i < histogram.length; ++i) {
+			seen += histogram[i];
+			if(seen >= rank)
+				return Math.min(bucketMiddle(i), maxStepNanos);
+		}
+		return maxStepNanos;
+	}
+
+	static double cellsPerSecond(long cellsEvolved, long evolveNanos) {
+		if(evolveNanos == 0)
+			return 0;
+		return cellsEvolved * 1e9 / evolveNanos;
+	}
+
+	static double meanStepNanos(long evolveNanos, long stepsEvolved) {
+		if(stepsEvolved == 0)
+			return 0;
+		return (double) evolveNanos / stepsEvolved;
+	}
+
+	/**
+	 * Return a copy of the current values.
+	 * @return
+	 */
+	public AutomatonMetricsSnapshot snapshot() {
+		GenerationHistory history = this.automaton.getGenerationHistory();
+		return new AutomatonMetricsSnapshot(this.stepsEvolved, this.cellsEvolved, this.evolveNanos,
+				this.maxStepNanos, this.stepHistogram.clone(), history.size(), history.getRetainedBytes(),
+				this.measurementCalls, this.measurementNanos);
+	}
+
+	/**
+	 * Register the metrics with the platform MBeanServer under the name
+	 * "Automaton:type=AutomatonMetrics,name=" followed by the given name,
+	 * replacing any earlier registration of these metrics.
+	 * @param name
+	 * @return the ObjectName the metrics were registered under
+	 * @throws JMException
+	 */
+	public synchronized ObjectName register(String name) throws JMException {
+		unregister();
+		ObjectName objectName = new ObjectName("Automaton:type=AutomatonMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.objectName = objectName;
+		return objectName;
+	}
+
+	/**
+	 * Remove the metrics from the platform MBeanServer, if they are registered.
+	 * @throws JMException
+	 */
+	public synchronized void unregister() throws JMException {
+		if(this.objectName == null)
+			return;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if(server.isRegistered(this.objectName))
+			server.unregisterMBean(this.objectName);
+		this.objectName = null;
+	}
+
+	@Override
+	public long getStepsEvolved() {
+		return this.stepsEvolved;
+	}
+
+	@Override
+	public long getCellsEvolved() {
+		return this.cellsEvolved;
+	}
+
+	@Override
+	public double getCellsPerSecond() {
+		return cellsPerSecond(this.cellsEvolved, this.evolveNanos);
+	}
+
+	@Override
+	public double getMeanStepNanos() {
+		return meanStepNanos(this.evolveNanos, this.stepsEvolved);
+	}
+
+	@Override
+	public long getMedianStepNanos() {
+		return percentile(this.stepHistogram, this.maxStepNanos, 50);
+	}
+
+	@Override
+	public long getP90StepNanos() {
+		return percentile(this.stepHistogram, this.maxStepNanos, 90);
+	}
+
+	@Override
+	public long getP99StepNanos() {
+		return percentile(this.stepHistogram, this.maxStepNanos, 99);
+	}
+
+	@Override
+	public long getMaxStepNanos() {
+		return this.maxStepNanos;
+	}
+
+	@Override
+	public int getGenerationsRetained() {
+		return this.automaton.getGenerationHistory().size();
+	}
+
+	@Override
+	public long getHistoryBytes() {
+		return this.automaton.getGenerationHistory().getRetainedBytes();
+	}
+
+	@Override
+	public long getMeasurementCalls() {
+		return this.measurementCalls;
+	}
+
+	@Override
+	public long getMeasurementNanos() {
+		return this.measurementNanos;
+	}
+
+	@Override
+	public void reset() {
+		this.stepsEvolved = 0;
+		this.cellsEvolved = 0;
+		this.evolveNanos = 0;
+		this.maxStepNanos = 0;
+		this.stepHistogram = new long[BUCKETS];
+		this.measurementCalls = 0;
+		this.measurementNanos = 0;
+	}
+}
@@ -0,0 +1,14 @@
+/**
+ * This interface is the management interface of AutomatonMetrics, through
+ * which the metrics of an Automaton are published as a JMX MXBean. Besides
+ * the values of AutomatonMetricsView, it lets them be reset.
+ * @author User
+ *
+ */
+public interface AutomatonMetricsMXBean extends AutomatonMetricsView {
+
+	/**
+	 * Set all counters and times to 0.
+	 */
+	void reset();
+}
@@ -0,0 +1,123 @@
+/**
+ * This class is an immutable copy of the metrics of an Automaton at one
+ * point in time (see AutomatonMetrics.snapshot). Besides the values of
+ * AutomatonMetricsView, it can report any percentile of the step times.
+ * @author User
+ *
+ */
+public class AutomatonMetricsSnapshot implements AutomatonMetricsView {
+
+	private long stepsEvolved;
+	private long cellsEvolved;
+	private long evolveNanos;
+	private long maxStepNanos;
+	private long[] stepHistogram;
+	private int generationsRetained;
+	private long historyBytes;
+	private long measurementCalls;
+	private long measurementNanos;
+
+	AutomatonMetricsSnapshot(long stepsEvolved, long cellsEvolved, long evolveNanos, long maxStepNanos,
+			long[] stepHistogram, int generationsRetained, long historyBytes, long measurementCalls,
+			long measurementNanos) {
+		this.stepsEvolved = stepsEvolved;
+		this.cellsEvolved = cellsEvolved;
+		this.evolveNanos = evolveNanos;
+		this.maxStepNanos = maxStepNanos;
+		this.stepHistogram = stepHistogram;
+		this.generationsRetained = generationsRetained;
+		this.historyBytes = historyBytes;
+		this.measurementCalls = measurementCalls;
+		this.measurementNanos = measurementNanos;
+	}
+
+	@Override
+	public long getStepsEvolved() {
+		return this.stepsEvolved;
+	}
+
+	@Override
+	public long getCellsEvolved() {
+		return this.cellsEvolved;
+	}
+
+	/**
+	 * Return the total time spent evolving.
+	 * @return
+	 */
+	public long getEvolveNanos() {
+		return this.evolveNanos;
+	}
+
+	@Override
+	public double getCellsPerSecond() {
+		return AutomatonMetrics.cellsPerSecond(this.cellsEvolved, this.evolveNanos);
+	}
+
+	@Override
+	public double getMeanStepNanos() {
+		return AutomatonMetrics.meanStepNanos(this.evolveNanos, this.stepsEvolved);
+	}
+
+	@Override
+	public long getMedianStepNanos() {
+		return getStepNanosPercentile(50);
+	}
+
+	@Override
+	public long getP90StepNanos() {
+		return getStepNanosPercentile(90);
+	}
+
+	@Override
+	public long getP99StepNanos() {
+		return getStepNanosPercentile(99);
+	}
+
+	/**
+	 * Return the time per step below which the given percentage of steps
+	 * fall. The times are kept in buckets at most 12.5% wide (see 
+	 * AutomatonMetrics), so this is the middle of the bucket that holds the
+	 * percentile, within about 6% of the exact time, or 0 if no step has 
+	 * been recorded.
+	 * @param percent a number from 0 to 100
+	 * @return
+	 */
+	public long getStepNanosPercentile(double percent) {
+		return AutomatonMetrics.percentile(this.stepHistogram, this.maxStepNanos, percent);
+	}
+
+	@Override
+	public long getMaxStepNanos() {
+		return this.maxStepNanos;
+	}
+
+	@Override
+	public int getGenerationsRetained() {
+		return this.generationsRetained;
+	}
+
+	@Override
+	public long getHistoryBytes() {
+		return this.historyBytes;
+	}
+
+	@Override
+	public long getMeasurementCalls() {
+		return this.measurementCalls;
+	}
+
+	@Override
+	public long getMeasurementNanos() {
+		return this.measurementNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "steps=" + this.stepsEvolved + ", cells/s=" + getCellsPerSecond()
+				+ ", mean ns/step=" + getMeanStepNanos() + ", p50=" + getMedianStepNanos()
+				+ ", p99=" + getP99StepNanos() + ", max=" + this.maxStepNanos
+				+ ", retained=" + this.generationsRetained + ", history bytes=" + this.historyBytes
+				+ ", measurement ns=" + this.measurementNanos + " (" + this.measurementCalls + " calls)";
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * This interface is a read-only view of the metrics of an Automaton. It is
+ * implemented by AutomatonMetricsSnapshot, and extended by
+ * AutomatonMetricsMXBean, which adds reset for the live metrics. Times are
+ * in nanoseconds.
+ * @author User
+ *
+ */
+public interface AutomatonMetricsView {
+
+	/**
+	 * Return the number of evolution steps taken, including steps skipped
+	 * by jumping or taken from a cycle.
+	 * @return
+	 */
+	long getStepsEvolved();
+
+	/**
+	 * Return the number of Cells evolved, summed over all steps.
+	 * @return
+	 */
+	long getCellsEvolved();
+
+	/**
+	 * Return the number of Cells evolved per second spent evolving.
+	 * @return
+	 */
+	double getCellsPerSecond();
+
+	double getMeanStepNanos();
+
+	long getMedianStepNanos();
+
+	long getP90StepNanos();
+
+	long getP99StepNanos();
+
+	long getMaxStepNanos();
+
+	/**
+	 * Return the number of Generations retained by the history.
+	 * @return
+	 */
+	int getGenerationsRetained();
+
+	/**
+	 * Return the approximate number of bytes held by the history.
+	 * @return
+	 */
+	long getHistoryBytes();
+
+	/**
+	 * Return the number of AutomatonMeasurements calls on the Automaton.
+	 * @return
+	 */
+	long getMeasurementCalls();
+
+	/**
+	 * Return the time spent in AutomatonMeasurements calls on the Automaton.
+	 * @return
+	 */
+	long getMeasurementNanos();
+}
@@ -11,4 +11,27 @@ public interface BoundaryConditions {
 	 */
 	 // interface method (does not have a body)
 	Cell getNeighbor(int cellIdx, int offset, Generation gen);
+
+	/**
+	 * Return a view of a Generation with halo ghost cells on each side,
+	 * in the states these boundary conditions give the Cells outside it.
+	 * The default implementation asks getNeighbor for the neighbors of the
+	 * first and last Cells, which is correct whenever the neighbor depends
+	 * only on the index cellIdx + offset; boundary conditions can override
+	 * it to fill the ghost cells faster.
+	 * @param gen the Generation
+	 * @param halo the number of ghost cells on each side
+	 * @return the padded view
+	 */
+	default PaddedGeneration pad(Generation gen, int halo) {
+		PaddedGeneration padded = new PaddedGeneration(gen, halo);
+		int size = gen.size();
+		if(size == 0)
+			return padded;
+		for(int offset = 1; offset <= halo; ++offset) {
+			padded.setGhostState(-offset, getNeighbor(0, -offset, gen).getState());
+			padded.setGhostState(size - 1 + offset, getNeighbor(size - 1, offset, gen).getState());
+		}
+		return padded;
+	}
 }
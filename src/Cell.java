@@ -3,6 +3,18 @@ public class Cell {
 	
 	private CellState state;
 	
+	/**
+	 * One shared Cell for each CellState. Cells are immutable, so a Cell 
+	 * read from a Generation or a boundary can always be one of these.
+	 */
+	private static final Cell[] CANONICAL = new Cell[CellState.values().length];
+	
+	static {
+		for (CellState state : CellState.values()) {
+			CANONICAL[state.ordinal()] = new Cell(state);
+		}
+	}
+	
 	public Cell() {
 		this.state = CellState.OFF;
 	}
@@ -15,6 +27,15 @@ public class Cell {
 		this.state = state;
 	}
 	
+	/**
+	 * Return the shared Cell with a given CellState.
+	 * @param state
+	 * @return
+	 */
+	public static Cell valueOf(CellState state) {
+		return CANONICAL[state.ordinal()];
+	}
+	
 	/**
 	 * Return the CellState.
 	 * @return
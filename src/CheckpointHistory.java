@@ -0,0 +1,149 @@
+/**
+ * This class keeps a bounded subset of the Generations of an Automaton:
+ * a keyframe every keyframeInterval steps, plus a sliding window of the 
+ * most recent Generations. The initial Generation (step 0) is always a 
+ * keyframe. If the retained Generations grow beyond the memory budget, 
+ * the keyframe interval is doubled, which drops every other keyframe,
+ * so a run of any length fits in a fixed amount of memory.
+ * @author User
+ *
+ */
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class CheckpointHistory implements GenerationHistory {
+
+	private int keyframeInterval;
+	private int windowSize;
+	private long memoryBudget;
+	private TreeMap<Integer, Generation> retained = new TreeMap<Integer, Generation>();
+	private Deque<Integer> window = new ArrayDeque<Integer>();
+	private long retainedBytes;
+
+	/**
+	 * Construct an empty history.
+	 * @param keyframeInterval the number of steps between keyframes (at least 1)
+	 * @param windowSize the number of most recent Generations kept (at least 1)
+	 * @param memoryBudget the approximate number of bytes the retained 
+	 * Generations may hold, or Long.MAX_VALUE for no limit
+	 */
+	public CheckpointHistory(int keyframeInterval, int windowSize, long memoryBudget) {
+		if(keyframeInterval < 1)
+			throw new IllegalArgumentException("keyframeInterval must be at least 1.");
+		if(windowSize < 1)
+			throw new IllegalArgumentException("windowSize must be at least 1.");
+		this.keyframeInterval = keyframeInterval;
+		this.windowSize = windowSize;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Return the current number of steps between keyframes. 
+	 * This grows when the memory budget is exceeded.
+	 * @return
+	 */
+	public int getKeyframeInterval() {
+		return this.keyframeInterval;
+	}
+
+	/**
+	 * Return the current size of the window of recent Generations.
+	 * @return
+	 */
+	public int getWindowSize() {
+		return this.windowSize;
+	}
+
+	public long getMemoryBudget() {
+		return this.memoryBudget;
+	}
+
+	@Override
+	public void add(int stepNum, Generation gen) {
+		Generation old = this.retained.put(stepNum, gen);
+		if(old != null)
+			this.retainedBytes -= old.getApproximateBytes();
+		else
+			this.window.addLast(stepNum);
+		this.retainedBytes += gen.getApproximateBytes();
+
+		while(this.window.size() > this.windowSize) {
+			int oldest = this.window.removeFirst();
+			if(!isKeyframe(oldest))
+				remove(oldest);
+		}
+		enforceBudget();
+	}
+
+	/**
+	 * Double the keyframe interval until the retained Generations fit in 
+	 * the memory budget. If the keyframes alone cannot be thinned any 
+	 * further, shrink the window instead. The latest Generation and step 0 
+	 * are never evicted, even if they alone exceed the budget.
+	 */
+	private void enforceBudget() {
+		while(this.retainedBytes > this.memoryBudget) {
+			if(this.retained.size() - this.window.size() > 1 && this.keyframeInterval <= Integer.MAX_VALUE / 2) {
+				this.keyframeInterval *= 2;
+				// every step from the oldest one in the window on is in the window
+				Iterator<Map.Entry<Integer, Generation>> it = 
+						this.retained.headMap(this.window.peekFirst()).entrySet().iterator();
+				while(it.hasNext()) {
+					Map.Entry<Integer, Generation> entry = it.next();
+					if(!isKeyframe(entry.getKey())) {
+						this.retainedBytes -= entry.getValue().getApproximateBytes();
+						it.remove();
+					}
+				}
+			}
+			else if(this.window.size() > 1) {
+				this.windowSize = this.window.size() - 1;
+				int oldest = this.window.removeFirst();
+				if(!isKeyframe(oldest))
+					remove(oldest);
+			}
+			else {
+				break;
+			}
+		}
+	}
+
+	private boolean isKeyframe(int stepNum) {
+		return stepNum % this.keyframeInterval == 0;
+	}
+
+	private void remove(int stepNum) {
+		Generation gen = this.retained.remove(stepNum);
+		if(gen != null)
+			this.retainedBytes -= gen.getApproximateBytes();
+	}
+
+	@Override
+	public Generation get(int stepNum) {
+		return this.retained.get(stepNum);
+	}
+
+	@Override
+	public int floorStep(int stepNum) {
+		Integer step = this.retained.floorKey(stepNum);
+		return step == null ? -1 : step;
+	}
+
+	@Override
+	public boolean retainsEveryStep() {
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return this.retained.size();
+	}
+
+	@Override
+	public long getRetainedBytes() {
+		return this.retainedBytes;
+	}
+}
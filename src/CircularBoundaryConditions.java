@@ -34,4 +34,21 @@ public class CircularBoundaryConditions implements BoundaryConditions{
 		return cell;
 	}
 
+	@Override
+	/**
+	 * Fill the ghost cells by wrapping around: the ghost cells on the left
+	 * are the last Cells and those on the right are the first Cells.
+	 */
+	public PaddedGeneration pad(Generation gen, int halo) {
+		PaddedGeneration padded = new PaddedGeneration(gen, halo);
+		int size = gen.size();
+		if(size == 0)
+			return padded;
+		for(int offset = 1; offset <= halo; ++offset) {
+			padded.setGhostState(-offset, gen.getState(Math.floorMod(-offset, size)));
+			padded.setGhostState(size - 1 + offset, gen.getState((offset - 1) % size));
+		}
+		return padded;
+	}
+
 }
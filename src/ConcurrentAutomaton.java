@@ -0,0 +1,196 @@
+/**
+ * This class represents a one-dimensional cellular automaton like 
+ * Automaton, but can be shared between threads: one thread at a time 
+ * evolves it, while any number of threads read its Generations without 
+ * locking.
+ *
+ * Every Generation is kept in an array that is only appended to. An
+ * evolution step stores the new Generation and then publishes it by 
+ * writing the volatile step count, so a reader that sees the count also 
+ * sees every Generation up to it. Reading a step that has been published 
+ * takes no lock. Reading a later step evolves the Automaton under a lock; 
+ * threads that ask for the same future step at the same time wait for 
+ * that one evolution rather than repeating it.
+ *
+ * Unlike Automaton, this class has no retention policies, cycle detection,
+ * listeners or metrics.
+ * @author User
+ *
+ */
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentAutomaton {
+
+	private final Rule rule;
+	private final BoundaryConditions bc;
+
+	/**
+	 * The Generations of steps 0 to totalSteps. The array is replaced by a 
+	 * larger copy when it fills up; the elements past totalSteps are only 
+	 * read by the evolving thread.
+	 */
+	private volatile Generation[] generations;
+	private volatile int totalSteps;
+
+	/**
+	 * The lock held while evolving, and the settings of the evolution, 
+	 * which are only read and written while holding it.
+	 */
+	private final ReentrantLock evolveLock = new ReentrantLock();
+	private boolean subruleTracking = true;
+	private ForkJoinPool pool;
+	private int parallelThreshold;
+
+	public ConcurrentAutomaton(Rule rule, Generation init, BoundaryConditions bc) {
+		if(rule == null || init == null || bc == null)
+			throw new NullPointerException();
+		this.rule = rule;
+		this.bc = bc;
+		Generation[] generations = new Generation[16];
+		generations[0] = init;
+		this.generations = generations;
+	}
+
+	public Rule getRule() {
+		return this.rule;
+	}
+
+	public BoundaryConditions getBoundaryConditions() {
+		return this.bc;
+	}
+
+	/**
+	 * Return the total number of steps that have been published.
+	 * @return
+	 */
+	public int getTotalSteps() {
+		return this.totalSteps;
+	}
+
+	/**
+	 * Set whether Generations evolved from now on record the subrule 
+	 * number of each Cell (see Automaton.setSubruleTracking). This waits 
+	 * for any evolution in progress.
+	 * @param subruleTracking
+	 */
+	public void setSubruleTracking(boolean subruleTracking) {
+		this.evolveLock.lock();
+		try {
+			this.subruleTracking = subruleTracking;
+		}
+		finally {
+			this.evolveLock.unlock();
+		}
+	}
+
+	/**
+	 * Evolve each Generation in stripes on the given pool (see 
+	 * Automaton.setParallelism). This waits for any evolution in progress.
+	 * @param pool
+	 * @param threshold
+	 */
+	public void setParallelism(ForkJoinPool pool, int threshold) {
+		if(pool != null && threshold < 1)
+			throw new IllegalArgumentException("threshold must be at least 1.");
+		this.evolveLock.lock();
+		try {
+			this.pool = pool;
+			this.parallelThreshold = threshold;
+		}
+		finally {
+			this.evolveLock.unlock();
+		}
+	}
+
+	/**
+	 * Return the Generation produced by the given evolution step. If the
+	 * step has been published, no lock is taken. Otherwise the Automaton is
+	 * evolved up to it, unless another thread is already doing so, in which
+	 * case this waits for it.
+	 * @param stepNum
+	 * @return
+	 * @throws InvalidStepNumException
+	 */
+	public Generation getGeneration(int stepNum) throws InvalidStepNumException {
+		if(stepNum < 0)
+			throw new InvalidStepNumException();
+		if(stepNum > this.totalSteps)
+			evolveTo(stepNum);
+		return this.generations[stepNum];
+	}
+
+	/**
+	 * Return the Generation of the last published step.
+	 * @return
+	 */
+	public Generation getCurrent() {
+		int steps = this.totalSteps;
+		return this.generations[steps];
+	}
+
+	/**
+	 * Evolve the Automaton a given number of steps past the last published
+	 * step, publishing each Generation as soon as it is computed. If the 
+	 * number of steps is less than or equal to 0, leave it unchanged.
+	 * @param numSteps
+	 */
+	public void evolve(int numSteps) {
+		if(numSteps <= 0)
+			return;
+		this.evolveLock.lock();
+		try {
+			evolveLocked(this.totalSteps + numSteps);
+		}
+		finally {
+			this.evolveLock.unlock();
+		}
+	}
+
+	/**
+	 * Evolve the Automaton until the given step is published, unless it 
+	 * already has been by the time the lock is acquired.
+	 * @param stepNum
+	 */
+	private void evolveTo(int stepNum) {
+		this.evolveLock.lock();
+		try {
+			if(stepNum > this.totalSteps)
+				evolveLocked(stepNum);
+		}
+		finally {
+			this.evolveLock.unlock();
+		}
+	}
+
+	/**
+	 * Evolve up to the given step while holding the lock. The Generation 
+	 * (and the array, if it grows) is written before the step count, which 
+	 * publishes it.
+	 * @param stepNum
+	 */
+	private void evolveLocked(int stepNum) {
+		Generation[] generations = this.generations;
+		int steps = this.totalSteps;
+		Generation gen = generations[steps];
+		while(steps < stepNum) {
+			gen = this.rule.evolve(gen, this.bc, this.subruleTracking, this.pool, this.parallelThreshold);
+			steps++;
+			if(steps == generations.length) {
+				Generation[] grown = new Generation[2 * generations.length];
+				System.arraycopy(generations, 0, grown, 0, steps);
+				generations = grown;
+				this.generations = grown;
+			}
+			generations[steps] = gen;
+			this.totalSteps = steps;
+		}
+	}
+
+	/**
+	 * Return a String representation of the current Generation.
+	 */
+	public String toString() {
+		return getCurrent().toString();
+	}
+}
@@ -0,0 +1,471 @@
+/**
+ * This class keeps every Generation of an Automaton, but stores most of
+ * them as the difference from the previous step. A full Generation (a
+ * keyframe) is kept every keyframeInterval steps; every other step is
+ * stored as the XOR of its packed words with those of the previous step,
+ * run-length encoded so that unchanged words take no space. Rules that
+ * change only a few Cells per step therefore need a small fraction of the
+ * memory of ListHistory.
+ *
+ * A delta is a sequence of runs. Each run starts with a long holding the
+ * number of unchanged words to skip (high 32 bits) and the number of
+ * changed words that follow (low 32 bits), followed by the XOR of those
+ * words. Subrule numbers, if recorded, are stored the same way, with the
+ * lengths as variable-length integers and the XOR of each changed subrule
+ * number as a byte, or as a variable-length integer if it does not fit in
+ * one (see Rule.getSubruleNums); a leading byte tells which. Keyframe
+ * steps have no delta. The number of Cells that changed is kept for every
+ * step, so Hamming distances between successive steps are available
+ * without rebuilding any Generation.
+ *
+ * get rebuilds a Generation from the closest keyframe, or from the last
+ * Generation it rebuilt if that is closer, so reading the steps in order
+ * costs only the size of each delta and a copy.
+ * @author User
+ *
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DeltaHistory implements GenerationHistory {
+
+	private static final long[] NO_CHANGE = new long[0];
+
+	private static final byte BYTE_LITERALS = 0;
+	private static final byte VARINT_LITERALS = 1;
+
+	private int keyframeInterval;
+	private List<Generation> keyframes = new ArrayList<Generation>();
+
+	/**
+	 * The delta of every step from the previous one, null at keyframe steps.
+	 */
+	private List<long[]> deltas = new ArrayList<long[]>();
+	private List<byte[]> subruleDeltas = new ArrayList<byte[]>();
+	private int[] distances = new int[16];
+	private int count;
+	private long retainedBytes;
+
+	/**
+	 * The Generation added last, which the next one is compared with, or 
+	 * null if it must be rebuilt from its delta (see addDelta).
+	 */
+	private Generation last;
+
+	/**
+	 * The Generation rebuilt by the last call to get, and its step.
+	 */
+	private int cachedStep = -1;
+	private Generation cached;
+
+	/**
+	 * Construct an empty history.
+	 * @param keyframeInterval the number of steps between full Generations (at least 1)
+	 */
+	public DeltaHistory(int keyframeInterval) {
+		if(keyframeInterval < 1)
+			throw new IllegalArgumentException("keyframeInterval must be at least 1.");
+		this.keyframeInterval = keyframeInterval;
+	}
+
+	public int getKeyframeInterval() {
+		return this.keyframeInterval;
+	}
+
+	@Override
+	/**
+	 * Append the Generation, as a keyframe or as a delta from the previous
+	 * one. Since every step is kept, stepNum must be equal to the number of
+	 * Generations already stored.
+	 */
+	public void add(int stepNum, Generation gen) {
+		if(stepNum != this.count)
+			throw new IllegalArgumentException("Steps must be added in order. stepNum: " + stepNum);
+		Generation prev = last();
+		if(prev != null && gen.size() != prev.size())
+			throw new IllegalArgumentException("All generations must have " + prev.size() + " cells.");
+
+		if(isKeyframe(stepNum)) {
+			this.keyframes.add(gen);
+			this.retainedBytes += gen.getApproximateBytes();
+			append(null, null, prev == null ? 0 : prev.countDifferences(gen, 0, gen.size()));
+		}
+		else {
+			long[] delta = encodeWords(prev, gen);
+			byte[] subruleDelta = gen.hasSubrules() ? encodeSubrules(prev, gen) : null;
+			addBytes(delta, subruleDelta);
+			append(delta, subruleDelta, changedCells(delta));
+		}
+		this.last = gen;
+	}
+
+	/**
+	 * Append the delta of a step that is not a keyframe, as returned by 
+	 * getDelta and getSubruleDelta, without the Generation it encodes. 
+	 * This is how a saved history is loaded (see AutomatonCheckpoint).
+	 * @param delta
+	 * @param subruleDelta
+	 */
+	void addDelta(long[] delta, byte[] subruleDelta) {
+		if(this.count == 0 || isKeyframe(this.count))
+			throw new IllegalArgumentException("Step " + this.count + " must be a keyframe.");
+		if(delta.length == 0)
+			delta = NO_CHANGE;
+		addBytes(delta, subruleDelta);
+		append(delta, subruleDelta, changedCells(delta));
+		this.last = null;
+	}
+
+	private void addBytes(long[] delta, byte[] subruleDelta) {
+		if(delta != NO_CHANGE)
+			this.retainedBytes += 16 + 8L * delta.length;
+		if(subruleDelta != null)
+			this.retainedBytes += 16 + subruleDelta.length;
+	}
+
+	private void append(long[] delta, byte[] subruleDelta, int distance) {
+		this.deltas.add(delta);
+		this.subruleDeltas.add(subruleDelta);
+		if(this.count == this.distances.length)
+			this.distances = Arrays.copyOf(this.distances, 2 * this.count);
+		this.distances[this.count] = distance;
+		this.count++;
+	}
+
+	/**
+	 * Return true if the given step is stored as a full Generation.
+	 * @param stepNum
+	 * @return
+	 */
+	boolean isKeyframe(int stepNum) {
+		return stepNum % this.keyframeInterval == 0;
+	}
+
+	/**
+	 * Return the run-length encoded XOR of the words of a step with those 
+	 * of the previous step, or null if the step is a keyframe.
+	 * @param stepNum
+	 * @return
+	 */
+	long[] getDelta(int stepNum) {
+		return this.deltas.get(stepNum);
+	}
+
+	/**
+	 * Return the encoded XOR of the subrule numbers of a step with those 
+	 * of the previous step, or null if the step is a keyframe or has no 
+	 * subrule numbers.
+	 * @param stepNum
+	 * @return
+	 */
+	byte[] getSubruleDelta(int stepNum) {
+		return this.subruleDeltas.get(stepNum);
+	}
+
+	/**
+	 * Return the Generation added last, rebuilding it if it was added as 
+	 * a delta, or null if the history is empty.
+	 * @return
+	 */
+	private Generation last() {
+		if(this.last == null && this.count > 0)
+			this.last = rebuild(this.count - 1);
+		return this.last;
+	}
+
+	/**
+	 * Return the run-length encoded XOR of the words of two Generations.
+	 * @param prev
+	 * @param gen
+	 * @return
+	 */
+	private static long[] encodeWords(Generation prev, Generation gen) {
+		int wordCount = gen.getWordCount();
+		long[] out = null;
+		int length = 0;
+		int w = 0;
+		while(w < wordCount) {
+			int start = w;
+			while(w < wordCount && gen.getWord(w) == prev.getWord(w)) {
+				w++;
+			}
+			if(w == wordCount)
+				break;
+			int skip = w - start;
+			int literals = w;
+			while(w < wordCount && gen.getWord(w) != prev.getWord(w)) {
+				w++;
+			}
+			int changed = w - literals;
+			if(out == null)
+				out = new long[Math.min(wordCount + 1, 2 * changed + 2)];
+			if(length + 1 + changed > out.length)
+				out = Arrays.copyOf(out, Math.max(2 * out.length, length + 1 + changed));
+			out[length++] = ((long) skip << 32) | changed;
+			for(int i = literals; i < w; ++i) {
+				out[length++] = gen.getWord(i) ^ prev.getWord(i);
+			}
+		}
+		if(out == null)
+			return NO_CHANGE;
+		return length == out.length ? out : Arrays.copyOf(out, length);
+	}
+
+	/**
+	 * Return the run-length encoded XOR of the subrule numbers of a
+	 * Generation with those of the previous one, or with zeros if the
+	 * previous one has none.
+	 * @param prev
+	 * @param gen
+	 * @return
+	 */
+	private static byte[] encodeSubrules(Generation prev, Generation gen) {
+		int size = gen.size();
+		boolean hasPrev = prev.hasSubrules();
+		boolean wide = gen.hasWideSubrules();
+		byte[] out = new byte[16];
+		out[0] = wide ? VARINT_LITERALS : BYTE_LITERALS;
+		int length = 1;
+		int i = 0;
+		while(i < size) {
+			int start = i;
+			while(i < size && subruleXor(prev, hasPrev, gen, i) == 0) {
+				i++;
+			}
+			if(i == size)
+				break;
+			int skip = i - start;
+			int literals = i;
+			while(i < size && subruleXor(prev, hasPrev, gen, i) != 0) {
+				i++;
+			}
+			int changed = i - literals;
+			int literalBytes = wide ? 5 * changed : changed;
+			if(length + 10 + literalBytes > out.length)
+				out = Arrays.copyOf(out, Math.max(2 * out.length, length + 10 + literalBytes));
+			length = writeVarint(out, length, skip);
+			length = writeVarint(out, length, changed);
+			for(int j = literals; j < i; ++j) {
+				if(wide)
+					length = writeVarint(out, length, subruleXor(prev, hasPrev, gen, j));
+				else
+					out[length++] = (byte) subruleXor(prev, hasPrev, gen, j);
+			}
+		}
+		return Arrays.copyOf(out, length);
+	}
+
+	private static int subruleXor(Generation prev, boolean hasPrev, Generation gen, int idx) {
+		return gen.getSubruleNum(idx) ^ (hasPrev ? prev.getSubruleNum(idx) : 0);
+	}
+
+	private static int writeVarint(byte[] out, int pos, int value) {
+		while((value & ~0x7F) != 0) {
+			out[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out[pos++] = (byte) value;
+		return pos;
+	}
+
+	/**
+	 * Return the number of bits set in the changed words of a delta.
+	 * @param delta
+	 * @return
+	 */
+	private static int changedCells(long[] delta) {
+		int count = 0;
+		int pos = 0;
+		while(pos < delta.length) {
+			int changed = (int) delta[pos++];
+			for(int i = 0; i < changed; ++i) {
+				count += Long.bitCount(delta[pos++]);
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public Generation get(int stepNum) {
+		if(stepNum < 0 || stepNum >= this.count)
+			return null;
+		if(isKeyframe(stepNum))
+			return this.keyframes.get(stepNum / this.keyframeInterval);
+		if(stepNum == this.count - 1)
+			return last();
+		if(stepNum == this.cachedStep)
+			return this.cached;
+		return rebuild(stepNum);
+	}
+
+	/**
+	 * Rebuild the Generation of a step that is not a keyframe from the 
+	 * closest keyframe, or from the cached Generation if that is closer, 
+	 * and cache it.
+	 * @param stepNum
+	 * @return
+	 */
+	private Generation rebuild(int stepNum) {
+		int keyframe = stepNum - stepNum % this.keyframeInterval;
+		int step = keyframe;
+		Generation base = this.keyframes.get(keyframe / this.keyframeInterval);
+		if(this.cachedStep > keyframe && this.cachedStep < stepNum) {
+			step = this.cachedStep;
+			base = this.cached;
+		}
+		int size = base.size();
+		long[] words = new long[base.getWordCount()];
+		for(int w = 0; w < words.length; ++w) {
+			words[w] = base.getWord(w);
+		}
+		int[] subrules = null;
+		boolean wide = base.hasWideSubrules();
+		if(base.hasSubrules()) {
+			subrules = new int[size];
+			for(int i = 0; i < size; ++i) {
+				subrules[i] = base.getSubruleNum(i);
+			}
+		}
+		for(++step; step <= stepNum; ++step) {
+			applyWords(this.deltas.get(step), words);
+			byte[] subruleDelta = this.subruleDeltas.get(step);
+			if(subruleDelta == null) {
+				subrules = null;
+				continue;
+			}
+			if(subrules == null)
+				subrules = new int[size];
+			wide = applySubrules(subruleDelta, subrules);
+		}
+		this.cachedStep = stepNum;
+		if(subrules == null)
+			this.cached = new Generation(words, size, null);
+		else if(wide)
+			this.cached = Generation.withWideSubrules(words, size, subrules);
+		else {
+			byte[] bytes = new byte[size];
+			for(int i = 0; i < size; ++i) {
+				bytes[i] = (byte) subrules[i];
+			}
+			this.cached = new Generation(words, size, bytes);
+		}
+		return this.cached;
+	}
+
+	private static void applyWords(long[] delta, long[] words) {
+		int w = 0;
+		int pos = 0;
+		while(pos < delta.length) {
+			long run = delta[pos++];
+			w += (int) (run >>> 32);
+			int changed = (int) run;
+			for(int i = 0; i < changed; ++i) {
+				words[w++] ^= delta[pos++];
+			}
+		}
+	}
+
+	/**
+	 * Apply a subrule delta to the subrule numbers, and return true if its
+	 * literals are variable-length integers.
+	 * @param delta
+	 * @param subrules
+	 * @return
+	 */
+	private static boolean applySubrules(byte[] delta, int[] subrules) {
+		boolean wide = delta[0] == VARINT_LITERALS;
+		int idx = 0;
+		int[] pos = {1};
+		while(pos[0] < delta.length) {
+			idx += readVarint(delta, pos);
+			int changed = readVarint(delta, pos);
+			for(int i = 0; i < changed; ++i) {
+				subrules[idx++] ^= wide ? readVarint(delta, pos) : delta[pos[0]++] & 0xFF;
+			}
+		}
+		return wide;
+	}
+
+	private static int readVarint(byte[] in, int[] pos) {
+		int value = 0;
+		for(int shift = 0; ; shift += 7) {
+			byte b = in[pos[0]++];
+			value |= (b & 0x7F) << shift;
+			if(b >= 0)
+				return value;
+		}
+	}
+
+	/**
+	 * Return the Hamming distance between the Generations of steps
+	 * stepNum - 1 and stepNum, counting only the Cells with indices from
+	 * fromIdx (inclusive) to toIdx (exclusive), read from the delta of
+	 * stepNum without rebuilding either Generation. At a keyframe step,
+	 * which has no delta, the two Generations are compared instead. The 
+	 * step number must be from 1 to size() - 1.
+	 * @param stepNum
+	 * @param fromIdx
+	 * @param toIdx
+	 * @return
+	 */
+	public int getHammingDistance(int stepNum, int fromIdx, int toIdx) {
+		if(stepNum < 1 || stepNum >= this.count)
+			throw new IllegalArgumentException("No delta for step " + stepNum);
+		if(fromIdx == 0 && toIdx == this.keyframes.get(0).size())
+			return this.distances[stepNum];
+
+		long[] delta = this.deltas.get(stepNum);
+		if(delta == null)
+			return get(stepNum - 1).countDifferences(get(stepNum), fromIdx, toIdx);
+		int count = 0;
+		int w = 0;
+		int pos = 0;
+		while(pos < delta.length) {
+			long run = delta[pos++];
+			w += (int) (run >>> 32);
+			int changed = (int) run;
+			for(int i = 0; i < changed; ++i, ++w) {
+				long word = delta[pos++];
+				int first = w << 6;
+				if(first + 64 <= fromIdx || first >= toIdx)
+					continue;
+				if(fromIdx > first)
+					word &= -1L << (fromIdx - first);
+				if(toIdx < first + 64)
+					word &= -1L >>> (first + 64 - toIdx);
+				count += Long.bitCount(word);
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public int floorStep(int stepNum) {
+		return Math.min(stepNum, this.count - 1);
+	}
+
+	@Override
+	public boolean retainsEveryStep() {
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return this.count;
+	}
+
+	@Override
+	/**
+	 * Return the approximate number of bytes held by the keyframes, the
+	 * deltas, the last Generation added and the one rebuilt last.
+	 */
+	public long getRetainedBytes() {
+		long bytes = this.retainedBytes;
+		if(this.last != null && !isKeyframe(this.count - 1))
+			bytes += this.last.getApproximateBytes();
+		if(this.cached != null && this.cached != this.last)
+			bytes += this.cached.getApproximateBytes();
+		return bytes;
+	}
+}
@@ -6,10 +6,19 @@
  */
 public class ElementaryRule extends Rule{
 	
-	private final int CONFIGUATION_NUM = 8;
+	private static final int CONFIGUATION_NUM = 8;
+	
+	/**
+	 * subruleMasks[s] is all ones if subrule s turns the cell ON, 
+	 * and all zeros otherwise.
+	 */
+	private final long[] subruleMasks = new long[CONFIGUATION_NUM];
 	
 	protected ElementaryRule(int ruleNum) throws InvalidRuleNumException {
-		super(checkRuleNum(ruleNum));
+		super(checkRuleNum(ruleNum), CONFIGUATION_NUM);
+		for(int s = 0; s < CONFIGUATION_NUM; ++s) {
+			this.subruleMasks[s] = getNextState(s) == CellState.ON ? -1L : 0L;
+		}
 	}
 	
 	private static int checkRuleNum (int ruleNum) throws InvalidRuleNumException {
@@ -25,7 +34,15 @@ public class ElementaryRule extends Rule{
 	 * a cell from its neighborhood (i.e., the length of the rule table).
 	 */
 	public int getNumSubrules() {
-		return this.CONFIGUATION_NUM; 
+		return CONFIGUATION_NUM; 
+	}
+
+	@Override
+	/**
+	 * Return the radius of the neighborhood, which is 1.
+	 */
+	public int getRadius() {
+		return 1;
 	}
 
 	@Override
@@ -51,31 +68,82 @@ public class ElementaryRule extends Rule{
 	 * @return
 	 */
 	public EvolvedCell evolve(Cell[] neighborhood) {
+		int subruleNum = getSubruleNum(neighborhood);
+		return new EvolvedCell(getNextState(subruleNum), subruleNum);
+	}
 
-		char[] ch = new char[neighborhood.length];
+	@Override
+	/**
+	 * Read the neighborhood as a binary number, with the left neighbor as
+	 * the most significant bit and ON cells as 1s.
+	 */
+	public int getSubruleNum(Cell[] neighborhood) {
+		int subruleNum = 0;
 		for (int i = 0; i < neighborhood.length; ++i) {
-			if(neighborhood[i].getState().equals(CellState.OFF))
-				ch[i] = '0';
-			else if(neighborhood[i].getState().equals(CellState.ON))
-				ch[i] = '1';
+			subruleNum <<= 1;
+			if(neighborhood[i].getState() == CellState.ON)
+				subruleNum |= 1;
 		}
-		
-		String str = new String(ch);
-		int subruleNum = Integer.parseInt(str, 2);
-		
-		String base2RuleNum = Integer.toString(getRuleNum(), 2);
-		for(int i = base2RuleNum.length(); i < CONFIGUATION_NUM; ++i) {
-			base2RuleNum =  "0" + base2RuleNum;
-		}
-		
-		char nextStateSymbol = base2RuleNum.charAt(CONFIGUATION_NUM - subruleNum - 1);
-		if(nextStateSymbol == '0')
-			nextStateSymbol = '.';
-		else if(nextStateSymbol == '1')
-			nextStateSymbol = 'O';
-		EvolvedCell evolvedCell = new EvolvedCell(CellState.getState(nextStateSymbol), subruleNum);
+		return subruleNum;
+	}
+
+	@Override
+	/**
+	 * Read the left neighbor, the cell itself and the right neighbor 
+	 * without building a neighborhood array.
+	 */
+	public int getSubruleNum(int cellIdx, Generation gen, BoundaryConditions bc) {
+		int subruleNum = 0;
+		if(bc.getNeighbor(cellIdx, -1, gen).getState() == CellState.ON)
+			subruleNum |= 4;
+		if(gen.isOn(cellIdx))
+			subruleNum |= 2;
+		if(bc.getNeighbor(cellIdx, 1, gen).getState() == CellState.ON)
+			subruleNum |= 1;
+		return subruleNum;
+	}
+
+	@Override
+	/**
+	 * Apply the rule to 64 cells at a time. For each word of the Generation,
+	 * the words of left neighbors, centers and right neighbors are read 
+	 * from the padded Generation one Cell apart, and the next states are 
+	 * selected from the bits of the rule number with bitwise logic.
+	 */
+	protected boolean evolveWords(PaddedGeneration padded, long[] words, byte[] subrules, 
+			int fromWord, int toWord) {
+		Generation gen = padded.getGeneration();
+		int size = gen.size();
+		if(size == 0)
+			return true;
+
+		long[] m = this.subruleMasks;
+		int wordCount = gen.getWordCount();
+		for(int w = fromWord; w < toWord; ++w) {
+			long center = gen.getWord(w);
+			long left = padded.wordAt((w << 6) - 1);
+			long right = padded.wordAt((w << 6) + 1);
 
-		return evolvedCell;
+			long off0 = (m[1] & right) | (m[0] & ~right);
+			long off1 = (m[3] & right) | (m[2] & ~right);
+			long on0 = (m[5] & right) | (m[4] & ~right);
+			long on1 = (m[7] & right) | (m[6] & ~right);
+			long off = (center & off1) | (~center & off0);
+			long on = (center & on1) | (~center & on0);
+			words[w] = (left & on) | (~left & off);
+
+			if(subrules == null)
+				continue;
+			int first = w << 6;
+			int count = Math.min(Generation.WORD_SIZE, size - first);
+			for(int j = 0; j < count; ++j) {
+				subrules[first + j] = (byte) ((((left >>> j) & 1) << 2)
+						| (((center >>> j) & 1) << 1) | ((right >>> j) & 1));
+			}
+		}
+		if(toWord == wordCount && (size & 63) != 0)
+			words[wordCount - 1] &= -1L >>> (64 - (size & 63));
+		return true;
 	}
 
 	@Override
@@ -0,0 +1,18 @@
+
+/**
+ * This interface is notified by an Automaton each time it evolves a 
+ * new Generation, in the same pass that produces it.
+ * @author User
+ *
+ */
+public interface EvolutionListener {
+
+	/**
+	 * Called after the Automaton has produced the Generation of the given step.
+	 * @param a the Automaton
+	 * @param stepNum the step that produced next (at least 1)
+	 * @param previous the Generation of step stepNum - 1
+	 * @param next the Generation of step stepNum
+	 */
+	void generationEvolved(Automaton a, int stepNum, Generation previous, Generation next);
+}
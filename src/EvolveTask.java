@@ -0,0 +1,45 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class evolves a range of words of a Generation on a ForkJoinPool, 
+ * splitting the range in half until it is no longer than one stripe.
+ * @author User
+ *
+ */
+class EvolveTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 3L;
+
+	private final Rule rule;
+	private final PaddedGeneration padded;
+	private final BoundaryConditions bc;
+	private final long[] words;
+	private final byte[] subrules;
+	private final int fromWord;
+	private final int toWord;
+	private final int stripeWords;
+
+	EvolveTask(Rule rule, PaddedGeneration padded, BoundaryConditions bc, long[] words, byte[] subrules,
+			int fromWord, int toWord, int stripeWords) {
+		this.rule = rule;
+		this.padded = padded;
+		this.bc = bc;
+		this.words = words;
+		this.subrules = subrules;
+		this.fromWord = fromWord;
+		this.toWord = toWord;
+		this.stripeWords = stripeWords;
+	}
+
+	@Override
+	protected void compute() {
+		if(this.toWord - this.fromWord <= this.stripeWords) {
+			this.rule.evolveRange(this.padded, this.bc, this.words, this.subrules, this.fromWord, this.toWord);
+		}
+		else {
+			int mid = (this.fromWord + this.toWord) >>> 1;
+			invokeAll(new EvolveTask(this.rule, this.padded, this.bc, this.words, this.subrules, this.fromWord, mid, this.stripeWords),
+					new EvolveTask(this.rule, this.padded, this.bc, this.words, this.subrules, mid, this.toWord, this.stripeWords));
+		}
+	}
+}
@@ -9,11 +9,46 @@ public class EvolvedCell extends Cell{
 	
 	private int subruleNum;
 	
+	/**
+	 * The largest subrule number that has shared EvolvedCells.
+	 */
+	private static final int MAX_CANONICAL_SUBRULE = 0xFF;
+	
+	private static final int NUM_STATES = CellState.values().length;
+	
+	/**
+	 * One shared EvolvedCell for each CellState and subrule number, 
+	 * indexed by (subruleNum * NUM_STATES + state ordinal).
+	 */
+	private static final EvolvedCell[] CANONICAL = 
+			new EvolvedCell[(MAX_CANONICAL_SUBRULE + 1) * NUM_STATES];
+	
+	static {
+		for (int s = 0; s <= MAX_CANONICAL_SUBRULE; ++s) {
+			for (CellState state : CellState.values()) {
+				CANONICAL[s * NUM_STATES + state.ordinal()] = new EvolvedCell(state, s);
+			}
+		}
+	}
+	
 	public EvolvedCell(CellState state, int subruleNum) {
 		super(state);
 		this.subruleNum = subruleNum;
 	}
 	
+	/**
+	 * Return an EvolvedCell with a given CellState and subrule number. 
+	 * Subrule numbers 0 to 255 return a shared instance.
+	 * @param state
+	 * @param subruleNum
+	 * @return
+	 */
+	public static EvolvedCell valueOf(CellState state, int subruleNum) {
+		if(subruleNum < 0 || subruleNum > MAX_CANONICAL_SUBRULE)
+			return new EvolvedCell(state, subruleNum);
+		return CANONICAL[subruleNum * NUM_STATES + state.ordinal()];
+	}
+	
 	public int getSubruleNum() {
 		return this.subruleNum;
 	}
@@ -0,0 +1,268 @@
+/**
+ * This class keeps every Generation of an Automaton in a binary file
+ * instead of on the heap, so the number of steps kept is limited only by
+ * the disk. Each Generation is a fixed-width record, appended through a
+ * FileChannel, so the record of a step is found by its offset alone.
+ * Generations are read back lazily through MappedByteBuffers: the packed
+ * states are copied straight into a new Generation, without any parsing.
+ *
+ * The file starts with a header of HEADER_BYTES bytes: the magic number,
+ * the number of Cells, and whether subrule numbers are stored. Each record
+ * holds the packed words of the states (little-endian), followed, if
+ * subrule numbers are stored, by one byte per Cell and a flag byte that
+ * tells whether the Generation had them, padded to a multiple of 8 bytes.
+ * Subrule numbers that do not fit in a byte (see Rule.getSubruleNums) 
+ * cannot be stored.
+ *
+ * The file is created when the history is constructed and must be closed
+ * with close. All Generations must have the same number of Cells. The 
+ * file only lives as long as the history: an existing history file 
+ * cannot be reopened or attached to a new FileHistory, which always 
+ * starts an empty file.
+ * @author User
+ *
+ */
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileHistory implements GenerationHistory, Closeable {
+
+	private static final int MAGIC = 0x43414831;
+	private static final int HEADER_BYTES = 16;
+
+	/**
+	 * The approximate number of bytes mapped by each MappedByteBuffer.
+	 */
+	private static final long CHUNK_BYTES = 1L << 26;
+
+	private FileChannel channel;
+	private boolean storeSubrules;
+	private int size = -1;
+	private int wordCount;
+	private int recordBytes;
+	private int recordsPerChunk;
+	private int count;
+
+	/**
+	 * The buffer each record is written from, reused for every add.
+	 */
+	private ByteBuffer writeBuffer;
+
+	/**
+	 * The buffer a record of the incomplete last chunk is read into, 
+	 * reused for every such read.
+	 */
+	private ByteBuffer readBuffer;
+
+	/**
+	 * The mapped chunks, each covering recordsPerChunk records, or null 
+	 * for the chunks that have not been read yet.
+	 */
+	private List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+
+	/**
+	 * Create the file, replacing any existing file of the same name.
+	 * @param file
+	 * @param storeSubrules whether to keep the subrule number of each Cell
+	 * @throws IOException
+	 */
+	public FileHistory(File file, boolean storeSubrules) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.storeSubrules = storeSubrules;
+	}
+
+	/**
+	 * Return true if the subrule numbers of the Cells are stored.
+	 * @return
+	 */
+	public boolean isStoringSubrules() {
+		return this.storeSubrules;
+	}
+
+	@Override
+	/**
+	 * Append the Generation. Since every step is kept, stepNum must be
+	 * equal to the number of Generations already stored. If subrule 
+	 * numbers are stored and those of the Generation do not fit in a byte,
+	 * throw an IllegalArgumentException.
+	 */
+	public void add(int stepNum, Generation gen) {
+		if(stepNum != this.count)
+			throw new IllegalArgumentException("Steps must be added in order. stepNum: " + stepNum);
+		if(this.storeSubrules && gen.hasWideSubrules())
+			throw new IllegalArgumentException("Subrule numbers above 255 cannot be stored.");
+		try {
+			if(this.size < 0)
+				writeHeader(gen.size());
+			else if(gen.size() != this.size)
+				throw new IllegalArgumentException("All generations must have " + this.size + " cells.");
+
+			ByteBuffer buf = this.writeBuffer;
+			buf.clear();
+			for(int w = 0; w < this.wordCount; ++w) {
+				buf.putLong(gen.getWord(w));
+			}
+			if(this.storeSubrules) {
+				boolean hasSubrules = gen.hasSubrules();
+				for(int i = 0; i < this.size; ++i) {
+					buf.put(hasSubrules ? (byte) gen.getSubruleNum(i) : 0);
+				}
+				buf.put(hasSubrules ? (byte) 1 : 0);
+			}
+			buf.position(this.recordBytes);
+			buf.flip();
+			long offset = recordOffset(stepNum);
+			while(buf.hasRemaining()) {
+				offset += this.channel.write(buf, offset);
+			}
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.count++;
+	}
+
+	private void writeHeader(int size) throws IOException {
+		this.size = size;
+		this.wordCount = Generation.wordCount(size);
+		int bytes = 8 * this.wordCount;
+		if(this.storeSubrules)
+			bytes += (size + 1 + 7) & ~7;
+		this.recordBytes = Math.max(8, bytes);
+		this.recordsPerChunk = (int) Math.max(1, CHUNK_BYTES / this.recordBytes);
+		this.writeBuffer = ByteBuffer.allocateDirect(this.recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+		this.readBuffer = ByteBuffer.allocateDirect(this.recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(size).putInt(this.storeSubrules ? 1 : 0).putInt(this.recordBytes);
+		header.flip();
+		long offset = 0;
+		while(header.hasRemaining()) {
+			offset += this.channel.write(header, offset);
+		}
+	}
+
+	private long recordOffset(int stepNum) {
+		return HEADER_BYTES + (long) stepNum * this.recordBytes;
+	}
+
+	@Override
+	public Generation get(int stepNum) {
+		if(stepNum < 0 || stepNum >= this.count)
+			return null;
+		int chunk = stepNum / this.recordsPerChunk;
+		ByteBuffer buf;
+		int offset;
+		if((long) (chunk + 1) * this.recordsPerChunk <= this.count) {
+			buf = mapChunk(chunk);
+			offset = (stepNum - chunk * this.recordsPerChunk) * this.recordBytes;
+		}
+		else {
+			buf = readRecord(stepNum);
+			offset = 0;
+		}
+
+		long[] words = new long[this.wordCount];
+		LongBuffer longs = buf.slice(offset, 8 * this.wordCount).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+		longs.get(words);
+
+		byte[] subrules = null;
+		if(this.storeSubrules && buf.get(offset + 8 * this.wordCount + this.size) != 0) {
+			subrules = new byte[this.size];
+			buf.get(offset + 8 * this.wordCount, subrules);
+		}
+		return new Generation(words, this.size, subrules);
+	}
+
+	/**
+	 * Return the chunk with the given index, mapping it if it has not been
+	 * mapped yet. All of its records must have been written, so each chunk
+	 * is mapped only once.
+	 * @param chunk
+	 * @return
+	 */
+	private MappedByteBuffer mapChunk(int chunk) {
+		if(chunk < this.chunks.size() && this.chunks.get(chunk) != null)
+			return this.chunks.get(chunk);
+
+		MappedByteBuffer buf;
+		try {
+			buf = this.channel.map(FileChannel.MapMode.READ_ONLY, recordOffset(chunk * this.recordsPerChunk), 
+					(long) this.recordsPerChunk * this.recordBytes);
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		while(this.chunks.size() <= chunk) {
+			this.chunks.add(null);
+		}
+		this.chunks.set(chunk, buf);
+		return buf;
+	}
+
+	/**
+	 * Read the record of the given step into the read buffer and return it.
+	 * @param stepNum
+	 * @return
+	 */
+	private ByteBuffer readRecord(int stepNum) {
+		ByteBuffer buf = this.readBuffer;
+		buf.clear();
+		long offset = recordOffset(stepNum);
+		try {
+			while(buf.hasRemaining()) {
+				int read = this.channel.read(buf, offset);
+				if(read < 0)
+					throw new EOFException("The record of step " + stepNum + " is incomplete.");
+				offset += read;
+			}
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		buf.flip();
+		return buf;
+	}
+
+	@Override
+	public int floorStep(int stepNum) {
+		return Math.min(stepNum, this.count - 1);
+	}
+
+	@Override
+	public boolean retainsEveryStep() {
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return this.count;
+	}
+
+	@Override
+	/**
+	 * Return the number of bytes of the file. The Generations are not
+	 * held on the heap.
+	 */
+	public long getRetainedBytes() {
+		return this.count == 0 ? 0 : recordOffset(this.count);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.chunks.clear();
+		this.channel.close();
+	}
+}
@@ -48,10 +48,10 @@ public class FixedBoundaryConditions implements BoundaryConditions{
 	public Cell getNeighbor(int cellIdx, int offset, Generation gen) {
 		Cell cell;
 		if((cellIdx + offset) < 0) {
-			cell = new Cell(this.left);
+			cell = Cell.valueOf(this.left);
 		}
 		else if((cellIdx + offset) >= gen.size()) {
-			cell = new Cell(this.right);
+			cell = Cell.valueOf(this.right);
 		}
 		else {
 			cell = gen.getCell(cellIdx + offset);
@@ -59,4 +59,18 @@ public class FixedBoundaryConditions implements BoundaryConditions{
 		return cell;	
 	}
 
+	@Override
+	/**
+	 * Fill the ghost cells on the left with the left boundary state and
+	 * those on the right with the right boundary state.
+	 */
+	public PaddedGeneration pad(Generation gen, int halo) {
+		PaddedGeneration padded = new PaddedGeneration(gen, halo);
+		for(int offset = 1; offset <= halo; ++offset) {
+			padded.setGhostState(-offset, this.left);
+			padded.setGhostState(gen.size() - 1 + offset, this.right);
+		}
+		return padded;
+	}
+
 }
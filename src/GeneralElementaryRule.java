@@ -0,0 +1,192 @@
+/**
+ * This class represents a rule of a two-state cellular automaton whose
+ * neighborhood is a cell and radius cells on each side, for any radius.
+ * The neighborhood is read as a binary number, with the leftmost cell as
+ * the most significant bit, and the rule is given by its Wolfram code:
+ * bit s of the code is the next state for subrule s. With a radius of 1,
+ * it is the same as an ElementaryRule.
+ *
+ * Evolution keeps the subrule number of the current cell as a sliding
+ * window: moving to the next cell shifts in the entering cell and masks
+ * off the leaving one, so each cell costs the same for any radius. With a
+ * radius of 4 or more, the subrule numbers do not fit in a byte, so 
+ * tracking them takes a second pass of the same window.
+ * @author User
+ *
+ */
+import java.math.BigInteger;
+
+public class GeneralElementaryRule extends Rule {
+
+	/**
+	 * The largest radius supported. The rule table has 2^(2 * radius + 1) entries.
+	 */
+	public static final int MAX_RADIUS = 7;
+
+	private int radius;
+	private BigInteger wolframCode;
+
+	/**
+	 * Construct a rule with the given radius and Wolfram code. If the radius
+	 * is negative or greater than MAX_RADIUS, throw an IllegalArgumentException.
+	 * @param radius
+	 * @param wolframCode a number from 0 to 2^(2^(2 * radius + 1)) - 1
+	 * @throws InvalidRuleNumException if the code is out of range
+	 */
+	public GeneralElementaryRule(int radius, BigInteger wolframCode) throws InvalidRuleNumException {
+		super(checkWolframCode(radius, wolframCode), 1 << (2 * radius + 1));
+		this.radius = radius;
+		this.wolframCode = wolframCode;
+	}
+
+	/**
+	 * Construct a rule with the given radius and a Wolfram code that fits in a long.
+	 * @param radius
+	 * @param wolframCode
+	 * @throws InvalidRuleNumException
+	 */
+	public GeneralElementaryRule(int radius, long wolframCode) throws InvalidRuleNumException {
+		this(radius, BigInteger.valueOf(wolframCode));
+	}
+
+	private static BigInteger checkWolframCode(int radius, BigInteger wolframCode) throws InvalidRuleNumException {
+		if(radius < 0 || radius > MAX_RADIUS)
+			throw new IllegalArgumentException("radius must be from 0 to " + MAX_RADIUS + ".");
+		if(wolframCode.signum() < 0 || wolframCode.bitLength() > 1 << (2 * radius + 1))
+			throw new InvalidRuleNumException();
+		return wolframCode;
+	}
+
+	public BigInteger getWolframCode() {
+		return this.wolframCode;
+	}
+
+	@Override
+	public int getNumSubrules() {
+		return 1 << (2 * this.radius + 1);
+	}
+
+	@Override
+	public int getRadius() {
+		return this.radius;
+	}
+
+	@Override
+	/**
+	 * Return the cell with index cellIdx and the radius cells on each side
+	 * of it, from left to right.
+	 */
+	public Cell[] getNeighborhood(int cellIdx, Generation gen, BoundaryConditions bc) {
+		Cell[] neighborhood = new Cell[2 * this.radius + 1];
+		for(int offset = -this.radius; offset <= this.radius; ++offset) {
+			if(offset == 0)
+				neighborhood[this.radius] = gen.getCell(cellIdx);
+			else
+				neighborhood[offset + this.radius] = bc.getNeighbor(cellIdx, offset, gen);
+		}
+		return neighborhood;
+	}
+
+	@Override
+	public EvolvedCell evolve(Cell[] neighborhood) {
+		int subruleNum = getSubruleNum(neighborhood);
+		return new EvolvedCell(getNextState(subruleNum), subruleNum);
+	}
+
+	@Override
+	/**
+	 * Read the neighborhood as a binary number, with the leftmost cell as
+	 * the most significant bit and ON cells as 1s.
+	 */
+	public int getSubruleNum(Cell[] neighborhood) {
+		int subruleNum = 0;
+		for(int i = 0; i < neighborhood.length; ++i) {
+			subruleNum <<= 1;
+			if(neighborhood[i].getState() == CellState.ON)
+				subruleNum |= 1;
+		}
+		return subruleNum;
+	}
+
+	@Override
+	public int getSubruleNum(int cellIdx, Generation gen, BoundaryConditions bc) {
+		int subruleNum = 0;
+		for(int offset = -this.radius; offset <= this.radius; ++offset) {
+			subruleNum <<= 1;
+			if(offset == 0 ? gen.isOn(cellIdx) : bc.getNeighbor(cellIdx, offset, gen).getState() == CellState.ON)
+				subruleNum |= 1;
+		}
+		return subruleNum;
+	}
+
+	@Override
+	/**
+	 * Slide the neighborhood window along the padded Generation: the 
+	 * subrule number of each Cell is that of the previous one shifted left, 
+	 * with the entering Cell as the lowest bit and the leaving Cell masked off.
+	 */
+	protected boolean evolveWords(PaddedGeneration padded, long[] words, byte[] subrules,
+			int fromWord, int toWord) {
+		int from = fromWord << 6;
+		int end = Math.min(padded.size(), toWord << 6);
+		if(from >= end)
+			return true;
+		int mask = getNumSubrules() - 1;
+		int window = 0;
+		for(int j = from - this.radius; j < from + this.radius; ++j) {
+			window = (window << 1) | padded.bit(j);
+		}
+		for(int i = from; i < end; ++i) {
+			window = ((window << 1) | padded.bit(i + this.radius)) & mask;
+			words[i >>> 6] |= (long) getNextBit(window) << i;
+			if(subrules != null)
+				subrules[i] = (byte) window;
+		}
+		return true;
+	}
+
+	@Override
+	/**
+	 * Slide the neighborhood window along the padded Generation as 
+	 * evolveWords does.
+	 */
+	int[] getSubruleNums(PaddedGeneration padded, BoundaryConditions bc) {
+		int[] subruleNums = new int[padded.size()];
+		int mask = getNumSubrules() - 1;
+		int window = 0;
+		for(int j = -this.radius; j < this.radius; ++j) {
+			window = (window << 1) | padded.bit(j);
+		}
+		for(int i = 0; i < subruleNums.length; ++i) {
+			window = ((window << 1) | padded.bit(i + this.radius)) & mask;
+			subruleNums[i] = window;
+		}
+		return subruleNums;
+	}
+
+	@Override
+	/**
+	 * Return a two-line string representation of the rule table in the
+	 * same form as ElementaryRule: the neighborhood configurations from all
+	 * ON to all OFF, separated by single spaces, and below the center
+	 * character of each one, the state it produces.
+	 */
+	public String toString() {
+		int width = 2 * this.radius + 1;
+		StringBuilder configurations = new StringBuilder();
+		StringBuilder states = new StringBuilder();
+		for(int s = getNumSubrules() - 1; s >= 0; --s) {
+			for(int bit = width - 1; bit >= 0; --bit) {
+				configurations.append(((s >>> bit) & 1) == 1 ? 'O' : '.');
+			}
+			for(int i = 0; i < width; ++i) {
+				states.append(i == this.radius ? getNextState(s).toString() : " ");
+			}
+			if(s > 0) {
+				configurations.append(' ');
+				states.append(' ');
+			}
+		}
+		return configurations + "\n" + states;
+	}
+}
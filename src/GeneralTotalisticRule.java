@@ -0,0 +1,165 @@
+/**
+ * This class represents a rule of a two-state totalistic cellular automaton
+ * whose neighborhood is a cell and radius cells on each side, for any
+ * radius. The subrule number is the number of ON cells in the neighborhood,
+ * and bit s of the rule number is the next state for subrule s. With a
+ * radius of 2, it is the same as a TotalisticRule.
+ *
+ * Evolution keeps the ON count of the current cell's neighborhood as a
+ * sliding window: moving to the next cell adds the entering cell and
+ * subtracts the leaving one, so each cell costs the same for any radius.
+ * @author User
+ *
+ */
+import java.math.BigInteger;
+
+public class GeneralTotalisticRule extends Rule {
+
+	/**
+	 * The largest radius supported, so that the rule number fits in a long.
+	 */
+	public static final int MAX_RADIUS = 30;
+
+	private int radius;
+	private long code;
+
+	/**
+	 * Construct a rule with the given radius and rule number. If the radius
+	 * is negative or greater than MAX_RADIUS, throw an IllegalArgumentException.
+	 * @param radius
+	 * @param code a number from 0 to 2^(2 * radius + 2) - 1
+	 * @throws InvalidRuleNumException if the rule number is out of range
+	 */
+	public GeneralTotalisticRule(int radius, long code) throws InvalidRuleNumException {
+		super(BigInteger.valueOf(checkCode(radius, code)), 2 * radius + 2);
+		this.radius = radius;
+		this.code = code;
+	}
+
+	private static long checkCode(int radius, long code) throws InvalidRuleNumException {
+		if(radius < 0 || radius > MAX_RADIUS)
+			throw new IllegalArgumentException("radius must be from 0 to " + MAX_RADIUS + ".");
+		if(code < 0 || (code >>> (2 * radius + 2)) != 0)
+			throw new InvalidRuleNumException();
+		return code;
+	}
+
+	/**
+	 * Return the full rule number, which may not fit in an int.
+	 * @return
+	 */
+	public long getCode() {
+		return this.code;
+	}
+
+	@Override
+	public int getNumSubrules() {
+		return 2 * this.radius + 2;
+	}
+
+	@Override
+	public int getRadius() {
+		return this.radius;
+	}
+
+	@Override
+	/**
+	 * Return the cell with index cellIdx and the radius cells on each side
+	 * of it, from left to right.
+	 */
+	public Cell[] getNeighborhood(int cellIdx, Generation gen, BoundaryConditions bc) {
+		Cell[] neighborhood = new Cell[2 * this.radius + 1];
+		for(int offset = -this.radius; offset <= this.radius; ++offset) {
+			if(offset == 0)
+				neighborhood[this.radius] = gen.getCell(cellIdx);
+			else
+				neighborhood[offset + this.radius] = bc.getNeighbor(cellIdx, offset, gen);
+		}
+		return neighborhood;
+	}
+
+	@Override
+	public EvolvedCell evolve(Cell[] neighborhood) {
+		int subruleNum = getSubruleNum(neighborhood);
+		return new EvolvedCell(getNextState(subruleNum), subruleNum);
+	}
+
+	@Override
+	/**
+	 * Return the total number of ON cells in the neighborhood.
+	 */
+	public int getSubruleNum(Cell[] neighborhood) {
+		int subruleNum = 0;
+		for(int i = 0; i < neighborhood.length; ++i) {
+			if(neighborhood[i].getState() == CellState.ON)
+				subruleNum++;
+		}
+		return subruleNum;
+	}
+
+	@Override
+	public int getSubruleNum(int cellIdx, Generation gen, BoundaryConditions bc) {
+		int subruleNum = gen.isOn(cellIdx) ? 1 : 0;
+		for(int offset = 1; offset <= this.radius; ++offset) {
+			if(bc.getNeighbor(cellIdx, -offset, gen).getState() == CellState.ON)
+				subruleNum++;
+			if(bc.getNeighbor(cellIdx, offset, gen).getState() == CellState.ON)
+				subruleNum++;
+		}
+		return subruleNum;
+	}
+
+	@Override
+	/**
+	 * Slide the neighborhood window along the padded Generation: the ON 
+	 * count of each Cell is that of the previous one, plus the entering 
+	 * Cell, minus the leaving one.
+	 */
+	protected boolean evolveWords(PaddedGeneration padded, long[] words, byte[] subrules,
+			int fromWord, int toWord) {
+		int from = fromWord << 6;
+		int end = Math.min(padded.size(), toWord << 6);
+		if(from >= end)
+			return true;
+		int count = 0;
+		for(int j = from - this.radius; j < from + this.radius; ++j) {
+			count += padded.bit(j);
+		}
+		for(int i = from; i < end; ++i) {
+			count += padded.bit(i + this.radius);
+			setNext(words, subrules, i, count);
+			count -= padded.bit(i - this.radius);
+		}
+		return true;
+	}
+
+	private void setNext(long[] words, byte[] subrules, int idx, int subruleNum) {
+		words[idx >>> 6] |= (long) getNextBit(subruleNum) << idx;
+		if(subrules != null)
+			subrules[idx] = (byte) subruleNum;
+	}
+
+	@Override
+	/**
+	 * Return a two-line string representation of the rule table in the
+	 * same form as TotalisticRule: the ON counts from the largest to 0,
+	 * separated by spaces, and below each one, the state it produces.
+	 */
+	public String toString() {
+		StringBuilder counts = new StringBuilder();
+		StringBuilder states = new StringBuilder();
+		for(int s = getNumSubrules() - 1; s >= 0; --s) {
+			String count = Integer.toString(s);
+			counts.append(count);
+			states.append(getNextState(s));
+			for(int i = 1; i < count.length(); ++i) {
+				states.append(' ');
+			}
+			if(s > 0) {
+				counts.append(' ');
+				states.append(' ');
+			}
+		}
+		return counts + "\n" + states.toString().replaceAll("\\s+$", "");
+	}
+}
@@ -1,14 +1,45 @@
+import java.util.Arrays;
 
 public class Generation {
-	
+
+	/**
+	 * The number of Cell states packed into each word of the bit array.
+	 */
+	static final int WORD_SIZE = 64;
+
+	/**
+	 * The states of the Cells, packed 64 to a long. Bit (idx % 64) of
+	 * words[idx / 64] is set if the Cell with index idx is ON. The bits
+	 * past the last Cell are always 0.
+	 */
+	private long[] words;
+
+	/**
+	 * The number of Cells in the Generation.
+	 */
+	private int size;
+
+	/**
+	 * The number of the subrule that produced each Cell (as an unsigned byte).
+	 * If the Generation is the initial state of an Automaton, or if it was
+	 * evolved with subrule tracking switched off, this is null and getCell
+	 * returns regular Cell objects. Otherwise getCell returns EvolvedCell
+	 * objects carrying these subrule numbers.
+	 */
+	private byte[] subrules;
+
+	/**
+	 * The subrule numbers of the Cells, if any of them does not fit in an
+	 * unsigned byte, as for rules with more than 256 subrules. At most one
+	 * of subrules and wideSubrules is not null.
+	 */
+	private int[] wideSubrules;
+
 	/**
-	 * A reference to an array of Cells. If the Generation is the 
-	 * initial state of an Automaton, the array will store regular
-	 * Cell objects. If the Generation was produced by the evolution 
-	 * of another Generation, the array will store EvolvedCell objects.
+	 * The hash code of the states, computed on first use (0 if not yet computed).
 	 */
-	private Cell[] cells;
-	
+	private int hash;
+
 	/**
 	 * Construct a Generation of regular Cell objects from an array of
 	 * CellStates. The number of Cells is equal to the length of the array,
@@ -16,73 +47,378 @@ public class Generation {
 	 * @param states
 	 */
 	public Generation(CellState[] states) {
-		this.cells = new Cell[states.length];
+		this.size = states.length;
+		this.words = new long[wordCount(this.size)];
 		for (int i = 0; i < states.length; ++i) {
-			this.cells[i] = new Cell(states[i]);
+			if(states[i] == CellState.ON)
+				this.words[i >>> 6] |= 1L << i;
 		}
 	}
-	
+
 	/**
 	 * Construct a Generation of regular Cell objects from a String of
-	 * characters representing cell states. If any symbol is not a key 
-	 * in the Map SYMBOL_TO_STATE (in the CellState enum), throw an 
-	 * IllegalArgumentException.
+	 * characters representing cell states. If any symbol is not a key
+	 * in the Map SYMBOL_TO_STATE (in the CellState enum), throw an
+	 * InvalidSymbolException (an IllegalArgumentException) with its offset.
+	 * The symbols are packed 8 at a time by GenerationLoader.
 	 * @param states
 	 */
 	public Generation (String states) {
-		this.cells = new Cell[states.length()];
-		for(int i = 0; i < states.length(); ++i) {
-			char ch = states.charAt(i);	
-			
-			if(ch != 'O' && ch != '.')
-				throw new IllegalArgumentException("Invalid key. ch: " + ch);
-			
-			this.cells[i] = new Cell(CellState.getState(ch));
-		}
+		Generation gen = GenerationLoader.fromChars(states);
+		this.size = gen.size;
+		this.words = gen.words;
 	}
-	
+
 	/**
-	 * Construct a Generation from an array of Cells. Make a copy of 
-	 * the array to ensure the Generation is immutable. Note that
-	 * this is the only way to create a Generation of EvolvedCell objects.
+	 * Construct a Generation from an array of Cells. The states are copied
+	 * into the bit array, so the Generation is immutable. If every Cell is an
+	 * EvolvedCell, its subrule number is kept as well, whatever its value.
+	 * Note that this is the only public way to create a Generation of 
+	 * EvolvedCell objects.
 	 * @param cells
 	 */
 	public Generation(Cell[] cells) {
-		this.cells = new Cell[cells.length];
-		this.cells = cells.clone();
+		this.size = cells.length;
+		this.words = new long[wordCount(this.size)];
+		int[] subruleNums = new int[this.size];
+		boolean evolved = this.size > 0;
+		boolean wide = false;
+		for (int i = 0; i < cells.length; ++i) {
+			if(cells[i].getState() == CellState.ON)
+				this.words[i >>> 6] |= 1L << i;
+			if(evolved && cells[i] instanceof EvolvedCell) {
+				int subruleNum = ((EvolvedCell) cells[i]).getSubruleNum();
+				wide |= subruleNum < 0 || subruleNum > 0xFF;
+				subruleNums[i] = subruleNum;
+			}
+			else {
+				evolved = false;
+			}
+		}
+		if(evolved && wide) {
+			this.wideSubrules = subruleNums;
+		}
+		else if(evolved) {
+			this.subrules = new byte[this.size];
+			for(int i = 0; i < this.size; ++i) {
+				this.subrules[i] = (byte) subruleNums[i];
+			}
+		}
+	}
+
+	/**
+	 * Construct a Generation directly from packed words. The arrays are
+	 * not copied, so the caller must not modify them afterwards.
+	 * @param words the packed states, with the bits past the last Cell cleared
+	 * @param size the number of Cells
+	 * @param subrules the subrule number of each Cell, or null
+	 */
+	Generation(long[] words, int size, byte[] subrules) {
+		this.words = words;
+		this.size = size;
+		this.subrules = subrules;
+	}
+
+	/**
+	 * Return a Generation made directly from packed words, with subrule 
+	 * numbers that do not all fit in a byte. The arrays are not copied.
+	 * @param words the packed states, with the bits past the last Cell cleared
+	 * @param size the number of Cells
+	 * @param subrules the subrule number of each Cell
+	 * @return
+	 */
+	static Generation withWideSubrules(long[] words, int size, int[] subrules) {
+		Generation gen = new Generation(words, size, null);
+		gen.wideSubrules = subrules;
+		return gen;
 	}
-	
+
+	/**
+	 * Return the number of longs needed to hold the given number of Cells.
+	 * @param size
+	 * @return
+	 */
+	static int wordCount(int size) {
+		return (size + WORD_SIZE - 1) >>> 6;
+	}
+
 	/**
-	 * Return the size of Cell[].
+	 * Return the number of Cells.
 	 * @return
 	 */
 	public int size() {
-		return this.cells.length;
+		return this.size;
 	}
-	
+
 	/**
-	 * Return the Cell value in Cell[] array with a given index.
+	 * Return the Cell with a given index. A negative index is treated as 0.
+	 * The Cells are shared instances, so no object is created.
 	 * @param idx
 	 * @return
 	 */
 	public Cell getCell(int idx) {
 		if(idx < 0)
 			idx = 0;
-		return this.cells[idx];
+		if(idx >= this.size)
+			throw new ArrayIndexOutOfBoundsException(idx);
+		CellState state = getState(idx);
+		if(this.subrules != null)
+			return EvolvedCell.valueOf(state, this.subrules[idx] & 0xFF);
+		if(this.wideSubrules != null)
+			return EvolvedCell.valueOf(state, this.wideSubrules[idx]);
+		return Cell.valueOf(state);
+	}
+
+	/**
+	 * Return the state of the Cell with a given index, without creating a Cell.
+	 * @param idx
+	 * @return
+	 */
+	CellState getState(int idx) {
+		return isOn(idx) ? CellState.ON : CellState.OFF;
+	}
+
+	/**
+	 * Return true if the Cell with a given index is ON.
+	 * @param idx
+	 * @return
+	 */
+	boolean isOn(int idx) {
+		return (this.words[idx >>> 6] & (1L << idx)) != 0;
+	}
+
+	/**
+	 * Return the number of words in the bit array.
+	 * @return
+	 */
+	int getWordCount() {
+		return this.words.length;
 	}
-	
+
+	/**
+	 * Return the word of the bit array with a given index. Bit j of the word
+	 * is the state of the Cell with index (wordIdx * 64 + j).
+	 * @param wordIdx
+	 * @return
+	 */
+	long getWord(int wordIdx) {
+		return this.words[wordIdx];
+	}
+
 	/**
-	 * Return a string representation of the Generation. 
-	 * The String consists of the concatenation of the characters 
+	 * Return a new Generation holding the states of the Cells with indices
+	 * from fromIdx (inclusive) to toIdx (exclusive), copied a word at a 
+	 * time, and their subrule numbers if they were recorded.
+	 * @param fromIdx
+	 * @param toIdx
+	 * @return
+	 */
+	Generation range(int fromIdx, int toIdx) {
+		int size = toIdx - fromIdx;
+		long[] words = new long[wordCount(size)];
+		int first = fromIdx >>> 6;
+		int shift = fromIdx & 63;
+		for(int w = 0; w < words.length; ++w) {
+			long word = this.words[first + w] >>> shift;
+			if(shift != 0 && first + w + 1 < this.words.length)
+				word |= this.words[first + w + 1] << (64 - shift);
+			words[w] = word;
+		}
+		if((size & 63) != 0)
+			words[words.length - 1] &= -1L >>> (64 - (size & 63));
+		if(this.wideSubrules != null)
+			return withWideSubrules(words, size, Arrays.copyOfRange(this.wideSubrules, fromIdx, toIdx));
+		byte[] subrules = this.subrules == null ? null : Arrays.copyOfRange(this.subrules, fromIdx, toIdx);
+		return new Generation(words, size, subrules);
+	}
+
+	/**
+	 * Return the number of Cells that are ON.
+	 * @return
+	 */
+	int countOn() {
+		int count = 0;
+		for(int i = 0; i < this.words.length; ++i) {
+			count += Long.bitCount(this.words[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Return the number of Cells with indices from fromIdx (inclusive) to 
+	 * toIdx (exclusive) whose states differ from those of another Generation 
+	 * of at least the same size. Whole words are compared with XOR and 
+	 * counted with Long.bitCount.
+	 * @param other
+	 * @param fromIdx
+	 * @param toIdx
+	 * @return
+	 */
+	int countDifferences(Generation other, int fromIdx, int toIdx) {
+		if(fromIdx >= toIdx)
+			return 0;
+		int first = fromIdx >>> 6;
+		int last = (toIdx - 1) >>> 6;
+		long firstMask = -1L << fromIdx;
+		long lastMask = -1L >>> (63 - ((toIdx - 1) & 63));
+		if(first == last)
+			return Long.bitCount((this.words[first] ^ other.words[first]) & firstMask & lastMask);
+		int count = Long.bitCount((this.words[first] ^ other.words[first]) & firstMask);
+		for(int i = first + 1; i < last; ++i) {
+			count += Long.bitCount(this.words[i] ^ other.words[i]);
+		}
+		count += Long.bitCount((this.words[last] ^ other.words[last]) & lastMask);
+		return count;
+	}
+
+	/**
+	 * Return true if the subrule number of each Cell was recorded.
+	 * @return
+	 */
+	boolean hasSubrules() {
+		return this.subrules != null || this.wideSubrules != null;
+	}
+
+	/**
+	 * Return true if the subrule numbers were recorded and some of them do
+	 * not fit in an unsigned byte.
+	 * @return
+	 */
+	boolean hasWideSubrules() {
+		return this.wideSubrules != null;
+	}
+
+	/**
+	 * Return the subrule number of the Cell with a given index. The subrule 
+	 * numbers must have been recorded.
+	 * @param idx
+	 * @return
+	 */
+	int getSubruleNum(int idx) {
+		if(this.wideSubrules != null)
+			return this.wideSubrules[idx];
+		return this.subrules[idx] & 0xFF;
+	}
+
+	/**
+	 * Add the number of Cells produced by each subrule to counts, where the
+	 * count of subrule s is at index (offset + s). The subrule numbers must 
+	 * have been recorded.
+	 * @param counts
+	 * @param offset
+	 */
+	void addSubruleCounts(int[] counts, int offset) {
+		if(this.wideSubrules != null) {
+			for(int i = 0; i < this.size; ++i) {
+				counts[offset + this.wideSubrules[i]]++;
+			}
+			return;
+		}
+		for(int i = 0; i < this.size; ++i) {
+			counts[offset + (this.subrules[i] & 0xFF)]++;
+		}
+	}
+
+	/**
+	 * Return the approximate number of bytes of memory held by the Generation,
+	 * including the object headers.
+	 * @return
+	 */
+	long getApproximateBytes() {
+		long bytes = 24 + 16 + 8L * this.words.length;
+		if(this.subrules != null)
+			bytes += 16 + this.subrules.length;
+		if(this.wideSubrules != null)
+			bytes += 16 + 4L * this.wideSubrules.length;
+		return bytes;
+	}
+
+	@Override
+	/**
+	 * Return a hash code of the states of the Cells, computed from the packed
+	 * words. The subrule numbers are not included.
+	 */
+	public int hashCode() {
+		int h = this.hash;
+		if(h == 0) {
+			h = this.size;
+			for(int i = 0; i < this.words.length; ++i) {
+				h = 31 * h + Long.hashCode(this.words[i]);
+			}
+			if(h == 0)
+				h = 1;
+			this.hash = h;
+		}
+		return h;
+	}
+
+	@Override
+	/**
+	 * Return true if the other object is a Generation of the same size whose
+	 * Cells have the same states. The subrule numbers are not compared.
+	 */
+	public boolean equals(Object o) {
+		if(this == o)
+			return true;
+		if(!(o instanceof Generation))
+			return false;
+		Generation other = (Generation) o;
+		if(this.size != other.size || hashCode() != other.hashCode())
+			return false;
+		for(int i = 0; i < this.words.length; ++i) {
+			if(this.words[i] != other.words[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return a string representation of the Generation.
+	 * The String consists of the concatenation of the characters
 	 * that represent the states of the Cells.
-	 * (Hint: Use the toString method of the Cell class.)
 	 */
 	public String toString() {
-		StringBuilder str = new StringBuilder();
-		for(int i = 0; i < size(); ++i) {
-			str.append(cells[i].toString());
+		char[] str = new char[this.size];
+		writeChars(0, this.size, str, 0);
+		return new String(str);
+	}
+
+	/**
+	 * Write the characters that represent the states of the Cells with 
+	 * indices from fromIdx (inclusive) to toIdx (exclusive) into dest, 
+	 * starting at offset.
+	 * @param fromIdx
+	 * @param toIdx
+	 * @param dest
+	 * @param offset
+	 */
+	void writeChars(int fromIdx, int toIdx, char[] dest, int offset) {
+		for(int i = fromIdx; i < toIdx; ) {
+			long word = this.words[i >>> 6] >>> i;
+			int end = Math.min(toIdx, (i | 63) + 1);
+			for(; i < end; ++i, word >>>= 1) {
+				dest[offset++] = (word & 1) != 0 ? 'O' : '.';
+			}
 		}
-		return str.toString();
 	}
-	
+
+	/**
+	 * Write the characters that represent the states of the Cells with 
+	 * indices from fromIdx (inclusive) to toIdx (exclusive) into dest as 
+	 * ASCII bytes, starting at offset.
+	 * @param fromIdx
+	 * @param toIdx
+	 * @param dest
+	 * @param offset
+	 */
+	void writeBytes(int fromIdx, int toIdx, byte[] dest, int offset) {
+		for(int i = fromIdx; i < toIdx; ) {
+			long word = this.words[i >>> 6] >>> i;
+			int end = Math.min(toIdx, (i | 63) + 1);
+			for(; i < end; ++i, word >>>= 1) {
+				dest[offset++] = (word & 1) != 0 ? (byte) 'O' : (byte) '.';
+			}
+		}
+	}
+
 }
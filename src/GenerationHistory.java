@@ -0,0 +1,55 @@
+
+/**
+ * This interface represents the storage an Automaton uses for the 
+ * Generations it has produced. An implementation may keep every Generation
+ * or only some of them; the Automaton recomputes any step that is not 
+ * retained by evolving forward from the closest earlier retained step.
+ * @author User
+ *
+ */
+public interface GenerationHistory {
+
+	/**
+	 * Store the Generation produced by the given evolution step. Steps are
+	 * added in increasing order, starting with the initial Generation at step 0.
+	 * @param stepNum
+	 * @param gen
+	 */
+	void add(int stepNum, Generation gen);
+
+	/**
+	 * Return the Generation produced by the given evolution step, or null 
+	 * if it is not retained.
+	 * @param stepNum
+	 * @return
+	 */
+	Generation get(int stepNum);
+
+	/**
+	 * Return the largest retained step number that is less than or equal 
+	 * to stepNum, or -1 if there is none.
+	 * @param stepNum
+	 * @return
+	 */
+	int floorStep(int stepNum);
+
+	/**
+	 * Return true if every step added is retained. If so, steps must be 
+	 * added one at a time; otherwise the Automaton may skip steps it 
+	 * computed without producing each Generation.
+	 * @return
+	 */
+	boolean retainsEveryStep();
+
+	/**
+	 * Return the number of Generations currently retained.
+	 * @return
+	 */
+	int size();
+
+	/**
+	 * Return the approximate number of bytes held by the retained Generations.
+	 * @return
+	 */
+	long getRetainedBytes();
+}
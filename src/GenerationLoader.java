@@ -0,0 +1,360 @@
+/**
+ * This is a utility class that builds Generations from large seeds 
+ * without going through a String or a CellState per Cell. The symbols 
+ * ('.' for OFF and 'O' for ON) can come from a byte array, a CharSequence, 
+ * an InputStream or a file, which is memory-mapped. Bytes are read 8 at a
+ * time as a long, validated with word-wide comparisons, and packed into 
+ * the bits of the Generation directly; a single line terminator ("\n" or 
+ * "\r\n") at the end of a byte input is ignored. Any other character makes
+ * the loader throw an InvalidSymbolException with the offset of the first
+ * invalid one.
+ *
+ * Generations can also be written and read in a packed binary form: the 
+ * magic number and the number of Cells (big-endian ints), followed by the 
+ * packed words of the states (little-endian longs), as in FileHistory. 
+ * load recognizes both forms.
+ * @author User
+ *
+ */
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class GenerationLoader {
+
+	private static final int PACKED_MAGIC = 0x43414750;
+
+	/**
+	 * The number of bytes read from a stream or copied from a CharSequence at a time.
+	 */
+	private static final int CHUNK_BYTES = 1 << 16;
+
+	/**
+	 * The largest part of a file mapped at once.
+	 */
+	private static final int MAP_BYTES = 1 << 30;
+
+	private static final long DOTS = 0x2E2E2E2E2E2E2E2EL;
+	private static final long OS = 0x4F4F4F4F4F4F4F4FL;
+	private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+	private static final long HIGH = 0x8080808080808080L;
+
+	private GenerationLoader() {
+	}
+
+	/**
+	 * Build a Generation from an array of symbols.
+	 * @param symbols
+	 * @return
+	 */
+	public static Generation fromBytes(byte[] symbols) {
+		return fromBytes(symbols, 0, symbols.length);
+	}
+
+	/**
+	 * Build a Generation from length symbols of an array, starting at
+	 * offset. The offset of an invalid symbol is counted from offset.
+	 * @param symbols
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	public static Generation fromBytes(byte[] symbols, int offset, int length) {
+		ByteBuffer buf = ByteBuffer.wrap(symbols).order(ByteOrder.LITTLE_ENDIAN);
+		int end = stripTerminator(buf, offset, offset + length);
+		Packer packer = new Packer(end - offset);
+		packer.pack(buf, offset, end, -offset);
+		return packer.build();
+	}
+
+	/**
+	 * Build a Generation from a sequence of symbols, such as a String or a
+	 * StringBuilder. Line terminators are not allowed.
+	 * @param symbols
+	 * @return
+	 */
+	public static Generation fromChars(CharSequence symbols) {
+		int length = symbols.length();
+		Packer packer = new Packer(length);
+		byte[] chunk = new byte[Math.min(length, CHUNK_BYTES)];
+		ByteBuffer buf = ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN);
+		for(int from = 0; from < length; from += chunk.length) {
+			int count = Math.min(chunk.length, length - from);
+			for(int i = 0; i < count; ++i) {
+				char ch = symbols.charAt(from + i);
+				// A char that does not fit in a byte can never be valid;
+				// make sure it is not mistaken for one that is.
+				chunk[i] = ch < 0x80 ? (byte) ch : 0;
+			}
+			try {
+				packer.pack(buf, 0, count, from);
+			}
+			catch(InvalidSymbolException e) {
+				throw new InvalidSymbolException(e.getOffset(), symbols.charAt((int) e.getOffset()));
+			}
+		}
+		return packer.build();
+	}
+
+	/**
+	 * Build a Generation from the symbols read from a stream until its end.
+	 * The stream is not closed.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static Generation read(InputStream in) throws IOException {
+		Packer packer = new Packer(CHUNK_BYTES);
+		byte[] chunk = new byte[CHUNK_BYTES];
+		ByteBuffer buf = ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN);
+		long offset = 0;
+		int carried = 0;
+		while(true) {
+			int filled = carried + in.readNBytes(chunk, carried, chunk.length - carried);
+			boolean end = filled < chunk.length;
+			// The last two bytes are kept back until the end of the stream
+			// is known, in case they are the final line terminator.
+			int parseEnd = end ? stripTerminator(buf, 0, filled) : filled - 2;
+			packer.pack(buf, 0, parseEnd, offset);
+			if(end)
+				break;
+			offset += parseEnd;
+			carried = filled - parseEnd;
+			System.arraycopy(chunk, parseEnd, chunk, 0, carried);
+		}
+		return packer.build();
+	}
+
+	/**
+	 * Build a Generation from a file of symbols, or from a file written by
+	 * writePacked. The file is memory-mapped, so it is not copied onto the
+	 * heap before being packed.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static Generation load(File file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long length = channel.size();
+			if(length >= 8) {
+				ByteBuffer header = readFully(channel, 0, 8);
+				if(header.getInt(0) == PACKED_MAGIC)
+					return loadPacked(channel, header.getInt(4));
+			}
+
+			int tailLength = (int) Math.min(2, length);
+			ByteBuffer tail = readFully(channel, length - tailLength, tailLength);
+			long end = length - tailLength + stripTerminator(tail, 0, tailLength);
+			if(end > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Too many cells: " + end);
+			Packer packer = new Packer((int) end);
+			for(long from = 0; from < end; from += MAP_BYTES) {
+				int count = (int) Math.min(MAP_BYTES, end - from);
+				ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, count).order(ByteOrder.LITTLE_ENDIAN);
+				packer.pack(buf, 0, count, from);
+			}
+			return packer.build();
+		}
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		while(buf.hasRemaining()) {
+			if(channel.read(buf, position + buf.position()) < 0)
+				throw new IOException("Unexpected end of file.");
+		}
+		return buf;
+	}
+
+	private static Generation loadPacked(FileChannel channel, int size) throws IOException {
+		int wordCount = Generation.wordCount(size);
+		if(size < 0 || channel.size() < 8 + 8L * wordCount)
+			throw new IOException("Corrupt packed generation.");
+		long[] words = new long[wordCount];
+		LongBuffer longs = channel.map(FileChannel.MapMode.READ_ONLY, 8, 8L * wordCount)
+				.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+		longs.get(words);
+		return packedGeneration(words, size);
+	}
+
+	/**
+	 * Write a Generation to a stream in the packed binary form. Subrule
+	 * numbers are not written. The stream is flushed but not closed.
+	 * @param gen
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void writePacked(Generation gen, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, CHUNK_BYTES));
+		data.writeInt(PACKED_MAGIC);
+		data.writeInt(gen.size());
+		ByteBuffer buf = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		for(int w = 0; w < gen.getWordCount(); ++w) {
+			if(!buf.hasRemaining()) {
+				data.write(buf.array(), 0, buf.position());
+				buf.clear();
+			}
+			buf.putLong(gen.getWord(w));
+		}
+		data.write(buf.array(), 0, buf.position());
+		data.flush();
+	}
+
+	/**
+	 * Read a Generation in the packed binary form from a stream.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static Generation readPacked(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if(data.readInt() != PACKED_MAGIC)
+			throw new IOException("Not a packed generation.");
+		int size = data.readInt();
+		if(size < 0)
+			throw new IOException("Corrupt packed generation.");
+		long[] words = new long[Generation.wordCount(size)];
+		byte[] chunk = new byte[CHUNK_BYTES];
+		LongBuffer longs = ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+		for(int w = 0; w < words.length; w += CHUNK_BYTES / 8) {
+			int count = Math.min(CHUNK_BYTES / 8, words.length - w);
+			data.readFully(chunk, 0, 8 * count);
+			longs.get(0, words, w, count);
+		}
+		return packedGeneration(words, size);
+	}
+
+	private static Generation packedGeneration(long[] words, int size) throws IOException {
+		if((size & 63) != 0 && (words[words.length - 1] & (-1L << size)) != 0)
+			throw new IOException("Corrupt packed generation.");
+		return new Generation(words, size, null);
+	}
+
+	/**
+	 * Return the end of the symbols from from to to, without a final
+	 * "\n" or "\r\n".
+	 * @param buf
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	private static int stripTerminator(ByteBuffer buf, int from, int to) {
+		if(to > from && buf.get(to - 1) == '\n') {
+			to--;
+			if(to > from && buf.get(to - 1) == '\r')
+				to--;
+		}
+		return to;
+	}
+
+	/**
+	 * Return a byte whose bit j is the high bit of byte j of a long.
+	 * @param highBits
+	 * @return
+	 */
+	private static long gather(long highBits) {
+		return ((highBits >>> 7) * 0x0102040810204080L) >>> 56;
+	}
+
+	/**
+	 * Return a long with the high bit of each byte of v set if that byte
+	 * equals the corresponding byte of pattern, and all other bits clear.
+	 * @param v
+	 * @param pattern
+	 * @return
+	 */
+	private static long bytesEqual(long v, long pattern) {
+		long x = v ^ pattern;
+		return ~(((x & LOW7) + LOW7) | x | LOW7);
+	}
+
+	/**
+	 * This class collects the packed words of a Generation as symbols are
+	 * validated, growing the words as needed.
+	 */
+	private static class Packer {
+
+		private long[] words;
+		private int size;
+
+		Packer(int expectedSize) {
+			this.words = new long[Generation.wordCount(expectedSize)];
+		}
+
+		/**
+		 * Validate and pack the symbols of buf from from to to. The offset
+		 * of buf[from] in the whole input is from + offset.
+		 * @param buf a little-endian buffer
+		 * @param from
+		 * @param to
+		 * @param offset
+		 */
+		void pack(ByteBuffer buf, int from, int to, long offset) {
+			if((long) this.size + (to - from) > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Too many cells.");
+			ensureCapacity(this.size + (to - from));
+			int i = from;
+			for(; i + 64 <= to; i += 64) {
+				long word = 0;
+				for(int k = 0; k < 8; ++k) {
+					long v = buf.getLong(i + 8 * k);
+					long ons = bytesEqual(v, OS);
+					if((ons | bytesEqual(v, DOTS)) != HIGH)
+						throw invalid(buf, i + 8 * k, offset);
+					word |= gather(ons) << (8 * k);
+				}
+				append(word, 64);
+			}
+			for(; i < to; ++i) {
+				byte b = buf.get(i);
+				if(b != 'O' && b != '.')
+					throw invalid(buf, i, offset);
+				append(b == 'O' ? 1L : 0L, 1);
+			}
+		}
+
+		private static InvalidSymbolException invalid(ByteBuffer buf, int from, long offset) {
+			int i = from;
+			while(buf.get(i) == 'O' || buf.get(i) == '.') {
+				i++;
+			}
+			return new InvalidSymbolException(i + offset, buf.get(i) & 0xFF);
+		}
+
+		/**
+		 * Append count Cells, whose states are the low count bits of bits.
+		 * @param bits
+		 * @param count
+		 */
+		private void append(long bits, int count) {
+			int shift = this.size & 63;
+			int w = this.size >>> 6;
+			this.words[w] |= bits << shift;
+			if(shift + count > 64)
+				this.words[w + 1] |= bits >>> (64 - shift);
+			this.size += count;
+		}
+
+		private void ensureCapacity(int size) {
+			int wordCount = Generation.wordCount(size);
+			if(wordCount > this.words.length)
+				this.words = Arrays.copyOf(this.words, Math.max(wordCount, 2 * this.words.length));
+		}
+
+		Generation build() {
+			int wordCount = Generation.wordCount(this.size);
+			long[] words = this.words.length == wordCount ? this.words : Arrays.copyOf(this.words, wordCount);
+			return new Generation(words, this.size, null);
+		}
+	}
+}
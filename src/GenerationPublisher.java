@@ -0,0 +1,137 @@
+/**
+ * This class streams the Generations that follow the current step of an
+ * Automaton to any number of subscribers. A producer thread evolves ahead 
+ * of the subscribers, so computing the next Generation overlaps with the
+ * subscribers processing the previous ones on other threads, but it never
+ * gets more than getBufferCapacity() Generations ahead of the slowest 
+ * subscriber: once a subscriber's buffer is full, the producer waits 
+ * until that subscriber requests more. The capacity is bufferSize rounded
+ * up to a power of two, as SubmissionPublisher does. Generations that 
+ * every subscriber has received are not kept.
+ *
+ * The producer evolves the Generations itself, with the Rule, boundary 
+ * conditions and settings the Automaton had when the publisher was 
+ * created; the Automaton is neither read nor changed afterwards, and its 
+ * history does not grow. The first Generation published is that of step 
+ * getFirstStep(), the next that of the following step, and so on.
+ *
+ * Nothing is produced until start is called, so every subscriber that 
+ * subscribes before then receives every Generation; a later subscriber 
+ * only receives the Generations published after it subscribed. When all 
+ * the steps have been published, or close is called, subscribers are 
+ * completed. Delivery is handled by a SubmissionPublisher on the given 
+ * executor. The producer runs on a thread of its own rather than on that 
+ * executor, so that waiting for a full buffer never holds up delivery, 
+ * even on a single-threaded or saturated executor.
+ * @author User
+ *
+ */
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+public class GenerationPublisher implements Flow.Publisher<Generation>, AutoCloseable {
+
+	private final Rule rule;
+	private final BoundaryConditions bc;
+	private final boolean subruleTracking;
+	private final ForkJoinPool pool;
+	private final int parallelThreshold;
+	private final Generation init;
+	private final int firstStep;
+	private final int numSteps;
+	private final SubmissionPublisher<Generation> publisher;
+	private boolean started;
+
+	/**
+	 * Construct a publisher of the numSteps Generations that follow the 
+	 * current one of the given Automaton (see Automaton.publish).
+	 * @param a
+	 * @param numSteps
+	 * @param bufferSize the number of Generations buffered for each subscriber, rounded up to a power of two
+	 * @param executor the executor that delivers to subscribers
+	 */
+	GenerationPublisher(Automaton a, int numSteps, int bufferSize, Executor executor) {
+		if(numSteps < 1)
+			throw new IllegalArgumentException("numSteps must be at least 1.");
+		if(bufferSize < 1)
+			throw new IllegalArgumentException("bufferSize must be at least 1.");
+		this.rule = a.getRule();
+		this.bc = a.getBoundaryConditions();
+		this.subruleTracking = a.isSubruleTracking();
+		this.pool = a.getPool();
+		this.parallelThreshold = a.getParallelThreshold();
+		this.init = a.getCurrent();
+		this.firstStep = a.getTotalSteps() + 1;
+		this.numSteps = numSteps;
+		this.publisher = new SubmissionPublisher<Generation>(executor, bufferSize);
+	}
+
+	/**
+	 * Return the step number of the first Generation published.
+	 * @return
+	 */
+	public int getFirstStep() {
+		return this.firstStep;
+	}
+
+	public int getNumSteps() {
+		return this.numSteps;
+	}
+
+	/**
+	 * Return the largest number of Generations buffered for each
+	 * subscriber, which is bufferSize rounded up to a power of two.
+	 * @return
+	 */
+	public int getBufferCapacity() {
+		return this.publisher.getMaxBufferCapacity();
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super Generation> subscriber) {
+		this.publisher.subscribe(subscriber);
+	}
+
+	/**
+	 * Start producing on a new daemon thread. Calling start again has no 
+	 * effect.
+	 */
+	public synchronized void start() {
+		if(this.started)
+			return;
+		this.started = true;
+		Thread producer = new Thread(this::produce, "GenerationPublisher-" + this.firstStep);
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	/**
+	 * Evolve and publish each Generation in turn. submit blocks while the
+	 * buffer of any subscriber is full, which keeps the producer at most 
+	 * getBufferCapacity() Generations ahead of the slowest one.
+	 */
+	private void produce() {
+		Generation gen = this.init;
+		try {
+			for(int i = 0; i < this.numSteps && !this.publisher.isClosed(); ++i) {
+				gen = this.rule.evolve(gen, this.bc, this.subruleTracking, this.pool, this.parallelThreshold);
+				this.publisher.submit(gen);
+			}
+			this.publisher.close();
+		}
+		catch(RuntimeException e) {
+			this.publisher.closeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Stop producing and complete the subscribers once they have received 
+	 * the Generations already published.
+	 */
+	@Override
+	public void close() {
+		this.publisher.close();
+	}
+}
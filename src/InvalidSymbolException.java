@@ -0,0 +1,28 @@
+
+/**
+ * This exception is thrown when a representation of a Generation contains
+ * a character that is not the symbol of a CellState. It records the offset
+ * of the first such character.
+ * @author User
+ *
+ */
+public class InvalidSymbolException extends IllegalArgumentException {
+
+	private static final long serialVersionUID = 3L;
+
+	private final long offset;
+
+	public InvalidSymbolException(long offset, int symbol) {
+		super("Invalid symbol at offset " + offset + ": '" + (char) symbol + "'");
+		this.offset = offset;
+	}
+
+	/**
+	 * Return the offset of the invalid character, in characters (or bytes)
+	 * from the start of the input.
+	 * @return
+	 */
+	public long getOffset() {
+		return this.offset;
+	}
+}
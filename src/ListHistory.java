@@ -0,0 +1,53 @@
+/**
+ * This class keeps every Generation of an Automaton in a List, 
+ * indexed by step number. It is the default GenerationHistory.
+ * @author User
+ *
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+public class ListHistory implements GenerationHistory {
+
+	private List<Generation> generations = new ArrayList<Generation>();
+	private long retainedBytes;
+
+	@Override
+	/**
+	 * Append the Generation. Since every step is kept, stepNum must be 
+	 * equal to the number of Generations already stored.
+	 */
+	public void add(int stepNum, Generation gen) {
+		if(stepNum != this.generations.size())
+			throw new IllegalArgumentException("Steps must be added in order. stepNum: " + stepNum);
+		this.generations.add(gen);
+		this.retainedBytes += gen.getApproximateBytes();
+	}
+
+	@Override
+	public Generation get(int stepNum) {
+		if(stepNum < 0 || stepNum >= this.generations.size())
+			return null;
+		return this.generations.get(stepNum);
+	}
+
+	@Override
+	public int floorStep(int stepNum) {
+		return Math.min(stepNum, this.generations.size() - 1);
+	}
+
+	@Override
+	public boolean retainsEveryStep() {
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return this.generations.size();
+	}
+
+	@Override
+	public long getRetainedBytes() {
+		return this.retainedBytes;
+	}
+}
@@ -0,0 +1,391 @@
+/**
+ * This class evolves a Generation many steps at once with a memoized
+ * macrocell (HashLife-style) algorithm for one-dimensional automata.
+ *
+ * The cells are stored in a canonical binary tree: a node of level k
+ * covers 2^k cells, and equal subtrees are the same object. For each node
+ * the engine remembers the center half of its cells after 2^j steps, so a
+ * pattern that repeats in space or in time is only evolved once. Any
+ * number of steps is reached by jumping the powers of two it is made of.
+ *
+ * Both kinds of built-in boundary conditions are handled by embedding the
+ * Generation in a wider lattice. Under CircularBoundaryConditions the
+ * lattice repeats the Generation periodically. Under FixedBoundaryConditions
+ * the cells outside the Generation are marked as frozen; a frozen cell
+ * never changes, which is exactly how fixed boundary cells behave.
+ *
+ * The node table and the result cache are bounded; the least recently used
+ * entries are evicted when they grow beyond the maximum size. Generations
+ * produced by the engine do not record subrule numbers.
+ * @author User
+ *
+ */
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class MacrocellEngine {
+
+	/**
+	 * A node of the macrocell tree. A node of level 0 is a single cell,
+	 * whose value has the state in bit 0 and the frozen flag in bit 1.
+	 */
+	private static final class Node {
+		final int level;
+		final Node left;
+		final Node right;
+		final int value;
+		final int hash;
+
+		Node(int value) {
+			this.level = 0;
+			this.left = null;
+			this.right = null;
+			this.value = value;
+			this.hash = value;
+		}
+
+		Node(Node left, Node right) {
+			this.level = left.level + 1;
+			this.left = left;
+			this.right = right;
+			this.value = 0;
+			this.hash = 31 * System.identityHashCode(left) + System.identityHashCode(right);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Node))
+				return false;
+			Node other = (Node) o;
+			return this.level == other.level && this.left == other.left
+					&& this.right == other.right && this.value == other.value;
+		}
+	}
+
+	/**
+	 * The key of a cached result: a node and the base-2 logarithm of the
+	 * number of steps it was advanced.
+	 */
+	private static final class ResultKey {
+		final Node node;
+		final int logSteps;
+
+		ResultKey(Node node, int logSteps) {
+			this.node = node;
+			this.logSteps = logSteps;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.node.hash + this.logSteps;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof ResultKey))
+				return false;
+			ResultKey other = (ResultKey) o;
+			return this.node == other.node && this.logSteps == other.logSteps;
+		}
+	}
+
+	private static final int STATE = 1;
+	private static final int FROZEN = 2;
+
+	private Rule rule;
+	private BoundaryConditions bc;
+	private int maxCacheSize;
+
+	/**
+	 * The actual radius of the rule, and the level of the smallest node the
+	 * engine advances directly. A node of that level has 4 * R cells, where
+	 * R is the radius rounded up to a power of 2, so its center half
+	 * can be advanced one step.
+	 */
+	private int radius;
+	private int baseLevel;
+
+	private Node[] leaves = new Node[4];
+	private Map<Node, Node> nodes;
+	private Map<ResultKey, Node> results;
+	private long cacheHits;
+	private long cacheMisses;
+
+	/**
+	 * Construct an engine for the given rule and boundary conditions.
+	 * Only CircularBoundaryConditions and FixedBoundaryConditions are
+	 * supported; for any other kind, throw an IllegalArgumentException.
+	 * @param rule
+	 * @param bc
+	 * @param maxCacheSize the largest number of nodes, and of cached results, to keep
+	 */
+	public MacrocellEngine(Rule rule, BoundaryConditions bc, int maxCacheSize) {
+		if(!(bc instanceof CircularBoundaryConditions) && !(bc instanceof FixedBoundaryConditions))
+			throw new IllegalArgumentException("Unsupported boundary conditions: " + bc);
+		if(maxCacheSize < 1)
+			throw new IllegalArgumentException("maxCacheSize must be at least 1.");
+		this.rule = rule;
+		this.bc = bc;
+		this.maxCacheSize = maxCacheSize;
+		this.radius = rule.getRadius();
+		int roundedRadius = Integer.highestOneBit(Math.max(1, this.radius));
+		if(roundedRadius < this.radius)
+			roundedRadius *= 2;
+		this.baseLevel = Integer.numberOfTrailingZeros(roundedRadius) + 2;
+		for(int i = 0; i < this.leaves.length; ++i) {
+			this.leaves[i] = new Node(i);
+		}
+		this.nodes = new LinkedHashMap<Node, Node>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Node, Node> eldest) {
+				return size() > MacrocellEngine.this.maxCacheSize;
+			}
+		};
+		this.results = new LinkedHashMap<ResultKey, Node>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ResultKey, Node> eldest) {
+				return size() > MacrocellEngine.this.maxCacheSize;
+			}
+		};
+	}
+
+	public long getCacheHits() {
+		return this.cacheHits;
+	}
+
+	public long getCacheMisses() {
+		return this.cacheMisses;
+	}
+
+	/**
+	 * Return the number of nodes currently in the node table.
+	 * @return
+	 */
+	public int getCacheSize() {
+		return this.nodes.size();
+	}
+
+	/**
+	 * Return the Generation that the given Generation evolves into after
+	 * the given number of steps.
+	 * @param gen
+	 * @param numSteps
+	 * @return
+	 */
+	public Generation advance(Generation gen, long numSteps) {
+		if(numSteps < 0)
+			throw new IllegalArgumentException("numSteps must not be negative.");
+		for(int j = 0; numSteps != 0 && gen.size() > 0; ++j, numSteps >>>= 1) {
+			if((numSteps & 1) != 0)
+				gen = jump(gen, j);
+		}
+		return gen;
+	}
+
+	/**
+	 * Advance a Generation 2^logSteps steps.
+	 * @param gen
+	 * @param logSteps
+	 * @return
+	 */
+	private Generation jump(Generation gen, int logSteps) {
+		int size = gen.size();
+		int level = Math.max(this.baseLevel + logSteps, 2);
+		while((1L << (level - 1)) < size) {
+			level++;
+		}
+		// The Generation starts at the beginning of the center half of the root.
+		long start = 1L << (level - 2);
+		Node root = build(gen, level, 0, start, new HashMap<Long, Node>());
+		Node result = advance(root, logSteps);
+
+		long[] words = new long[Generation.wordCount(size)];
+		read(result, 0, size, words);
+		return new Generation(words, size, null);
+	}
+
+	/**
+	 * Return the node of the given level covering the cells from x0 of the
+	 * embedding lattice, in which cell x is cell (x - start) of the Generation.
+	 * @param gen
+	 * @param level
+	 * @param x0
+	 * @param start
+	 * @param built nodes already built, by level and position
+	 * @return
+	 */
+	private Node build(Generation gen, int level, long x0, long start, Map<Long, Node> built) {
+		int size = gen.size();
+		long width = 1L << level;
+		// Nodes are shared by level and by the cell of the Generation they
+		// start at; all nodes entirely inside one boundary are the same.
+		long key;
+		if(this.bc instanceof CircularBoundaryConditions)
+			key = Math.floorMod(x0 - start, (long) size) * 64 + level;
+		else if(x0 + width <= start)
+			key = Long.MIN_VALUE + level;
+		else if(x0 >= start + size)
+			key = Long.MIN_VALUE + 64 + level;
+		else
+			key = (x0 - start) * 64 + level;
+		Node node = built.get(key);
+		if(node != null)
+			return node;
+
+		if(level == 0) {
+			node = this.leaves[cellValue(gen, x0 - start)];
+		}
+		else {
+			long half = width >>> 1;
+			node = join(build(gen, level - 1, x0, start, built), build(gen, level - 1, x0 + half, start, built));
+		}
+		built.put(key, node);
+		return node;
+	}
+
+	/**
+	 * Return the value of a leaf for cell idx of the Generation, where idx may
+	 * be outside the Generation.
+	 * @param gen
+	 * @param idx
+	 * @return
+	 */
+	private int cellValue(Generation gen, long idx) {
+		if(this.bc instanceof CircularBoundaryConditions)
+			return gen.isOn((int) Math.floorMod(idx, (long) gen.size())) ? STATE : 0;
+		FixedBoundaryConditions fixed = (FixedBoundaryConditions) this.bc;
+		if(idx < 0)
+			return FROZEN | (fixed.getLeftState() == CellState.ON ? STATE : 0);
+		if(idx >= gen.size())
+			return FROZEN | (fixed.getRightState() == CellState.ON ? STATE : 0);
+		return gen.isOn((int) idx) ? STATE : 0;
+	}
+
+	/**
+	 * Write the states of the cells of a node that fall in [0, size) into
+	 * packed words, where the first cell of the node is cell x0.
+	 * @param node
+	 * @param x0
+	 * @param size
+	 * @param words
+	 */
+	private void read(Node node, long x0, int size, long[] words) {
+		if(x0 >= size)
+			return;
+		if(node.level == 0) {
+			if((node.value & STATE) != 0)
+				words[(int) (x0 >>> 6)] |= 1L << x0;
+			return;
+		}
+		read(node.left, x0, size, words);
+		read(node.right, x0 + (1L << (node.level - 1)), size, words);
+	}
+
+	/**
+	 * Return the canonical node with the given children.
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	private Node join(Node left, Node right) {
+		Node node = new Node(left, right);
+		Node canonical = this.nodes.get(node);
+		if(canonical != null)
+			return canonical;
+		this.nodes.put(node, node);
+		return node;
+	}
+
+	/**
+	 * Return the center half of a node, advanced 2^logSteps steps. The node
+	 * must be at least logSteps levels above the base level.
+	 * @param node
+	 * @param logSteps
+	 * @return
+	 */
+	private Node advance(Node node, int logSteps) {
+		ResultKey key = new ResultKey(node, logSteps);
+		Node result = this.results.get(key);
+		if(result != null) {
+			this.cacheHits++;
+			return result;
+		}
+		this.cacheMisses++;
+
+		if(node.level == this.baseLevel) {
+			result = advanceBase(node);
+		}
+		else {
+			Node n0 = node.left;
+			Node n1 = join(node.left.right, node.right.left);
+			Node n2 = node.right;
+			if(logSteps == node.level - this.baseLevel) {
+				// Advance half the steps, then the other half.
+				Node r0 = advance(n0, logSteps - 1);
+				Node r1 = advance(n1, logSteps - 1);
+				Node r2 = advance(n2, logSteps - 1);
+				result = join(advance(join(r0, r1), logSteps - 1), advance(join(r1, r2), logSteps - 1));
+			}
+			else {
+				// Advance all the steps, then take the centers.
+				Node r0 = advance(n0, logSteps);
+				Node r1 = advance(n1, logSteps);
+				Node r2 = advance(n2, logSteps);
+				result = join(join(r0.right, r1.left), join(r1.right, r2.left));
+			}
+		}
+		this.results.put(key, result);
+		return result;
+	}
+
+	/**
+	 * Advance the center half of a node of the base level one step,
+	 * applying the rule to each cell that is not frozen.
+	 * @param node
+	 * @return
+	 */
+	private Node advanceBase(Node node) {
+		int width = 1 << node.level;
+		int[] values = new int[width];
+		flatten(node, values, 0);
+
+		Node[] level = new Node[width / 2];
+		Cell[] neighborhood = new Cell[2 * this.radius + 1];
+		for(int i = width / 4; i < 3 * width / 4; ++i) {
+			int value = values[i];
+			if((value & FROZEN) == 0) {
+				for(int j = 0; j < neighborhood.length; ++j) {
+					neighborhood[j] = Cell.valueOf((values[i - this.radius + j] & STATE) != 0 ? CellState.ON : CellState.OFF);
+				}
+				CellState next = this.rule.getNextState(neighborhood);
+				value = next == CellState.ON ? STATE : 0;
+			}
+			level[i - width / 4] = this.leaves[value];
+		}
+		for(int n = level.length; n > 1; n /= 2) {
+			for(int i = 0; i < n / 2; ++i) {
+				level[i] = join(level[2 * i], level[2 * i + 1]);
+			}
+		}
+		return level[0];
+	}
+
+	private void flatten(Node node, int[] values, int offset) {
+		if(node.level == 0) {
+			values[offset] = node.value;
+			return;
+		}
+		flatten(node.left, values, offset);
+		flatten(node.right, values, offset + (1 << (node.level - 1)));
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ * This class is a view of a Generation with a halo of ghost cells on each
+ * side: the halo Cells to the left of Cell 0 and the halo Cells to the
+ * right of the last Cell, in the states the boundary conditions give them.
+ * BoundaryConditions.pad fills the ghost cells once per step, so a Rule can
+ * read any neighbor within the halo by its index alone, with no boundary
+ * checks or calls to getNeighbor in its inner loop.
+ *
+ * The Cells are not copied: they are read straight from the words of the 
+ * Generation, and only the ghost cells are kept, packed into two small 
+ * arrays of their own. 64 consecutive Cells starting at any index can be 
+ * read with one or two shifts (see wordAt); only the few reads that 
+ * overlap the ghost cells take a slower path.
+ * @author User
+ *
+ */
+import java.util.Arrays;
+
+public class PaddedGeneration {
+
+	private Generation gen;
+	private int halo;
+	private int size;
+
+	/**
+	 * The states of the ghost cells. Bit (j % 64) of left[j / 64] is the 
+	 * state of the ghost cell with index j - halo, and bit (j % 64) of 
+	 * right[j / 64] that of the ghost cell with index size + j.
+	 */
+	private long[] left;
+	private long[] right;
+
+	/**
+	 * Construct a view of the given Generation with halo ghost cells on
+	 * each side, all OFF.
+	 * @param gen
+	 * @param halo
+	 */
+	public PaddedGeneration(Generation gen, int halo) {
+		if(halo < 0)
+			throw new IllegalArgumentException("halo must not be negative.");
+		this.halo = halo;
+		this.left = new long[Generation.wordCount(halo)];
+		this.right = new long[Generation.wordCount(halo)];
+		fill(gen);
+	}
+
+	/**
+	 * Make this a view of another Generation, with the ghost cells OFF. 
+	 * Evolving a window through many steps this way allocates no new view
+	 * per step.
+	 * @param gen
+	 */
+	void fill(Generation gen) {
+		this.gen = gen;
+		this.size = gen.size();
+		Arrays.fill(this.left, 0L);
+		Arrays.fill(this.right, 0L);
+	}
+
+	public Generation getGeneration() {
+		return this.gen;
+	}
+
+	/**
+	 * Return the number of ghost cells on each side.
+	 * @return
+	 */
+	public int getHalo() {
+		return this.halo;
+	}
+
+	/**
+	 * Return the number of Cells, not counting the ghost cells.
+	 * @return
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Set the state of a ghost cell. The index must be from -halo to -1,
+	 * or from size() to size() + halo - 1; otherwise, throw an
+	 * IllegalArgumentException.
+	 * @param idx
+	 * @param state
+	 */
+	public void setGhostState(int idx, CellState state) {
+		long[] ghosts;
+		int j;
+		if(idx >= -this.halo && idx < 0) {
+			ghosts = this.left;
+			j = idx + this.halo;
+		}
+		else if(idx >= this.size && idx < this.size + this.halo) {
+			ghosts = this.right;
+			j = idx - this.size;
+		}
+		else
+			throw new IllegalArgumentException("Not a ghost cell: " + idx);
+		if(state == CellState.ON)
+			ghosts[j >>> 6] |= 1L << j;
+		else
+			ghosts[j >>> 6] &= ~(1L << j);
+	}
+
+	/**
+	 * Return the state of the Cell or ghost cell with the given index,
+	 * from -halo to size() + halo - 1.
+	 * @param idx
+	 * @return
+	 */
+	public CellState getState(int idx) {
+		return bit(idx) != 0 ? CellState.ON : CellState.OFF;
+	}
+
+	/**
+	 * Return 1 if the Cell or ghost cell with the given index is ON, and 0
+	 * otherwise.
+	 * @param idx
+	 * @return
+	 */
+	int bit(int idx) {
+		if(idx >= 0 && idx < this.size)
+			return this.gen.isOn(idx) ? 1 : 0;
+		int j = idx < 0 ? idx + this.halo : idx - this.size;
+		long[] ghosts = idx < 0 ? this.left : this.right;
+		return (int) (ghosts[j >>> 6] >>> j) & 1;
+	}
+
+	/**
+	 * Return the states of the 64 Cells starting at the given index, the
+	 * Cell with index idx + j in bit j. The index must be at least -halo;
+	 * Cells past the last ghost cell read as OFF.
+	 * @param idx
+	 * @return
+	 */
+	long wordAt(int idx) {
+		if(idx >= 0 && idx <= this.size - 64) {
+			int w = idx >>> 6;
+			int shift = idx & 63;
+			long word = this.gen.getWord(w);
+			if(shift == 0)
+				return word;
+			return (word >>> shift) | (this.gen.getWord(w + 1) << (64 - shift));
+		}
+		long word = 0L;
+		if(idx < 0)
+			word |= bits(this.left, idx + this.halo, Math.min(64, -idx));
+		int from = Math.max(idx, 0);
+		int to = Math.min(idx + 64, this.size);
+		if(from < to)
+			word |= generationBits(from, to - from) << (from - idx);
+		from = Math.max(idx, this.size);
+		to = Math.min(idx + 64, this.size + this.halo);
+		if(from < to)
+			word |= bits(this.right, from - this.size, to - from) << (from - idx);
+		return word;
+	}
+
+	/**
+	 * Return count (1 to 64) bits of the packed array, starting at bit from.
+	 * @param words
+	 * @param from
+	 * @param count
+	 * @return
+	 */
+	private static long bits(long[] words, int from, int count) {
+		int w = from >>> 6;
+		int shift = from & 63;
+		long word = words[w] >>> shift;
+		if(shift != 0 && w + 1 < words.length)
+			word |= words[w + 1] << (64 - shift);
+		return count == 64 ? word : word & ~(-1L << count);
+	}
+
+	/**
+	 * Return the states of count (1 to 64) Cells of the Generation, 
+	 * starting at the Cell with index from.
+	 * @param from
+	 * @param count
+	 * @return
+	 */
+	private long generationBits(int from, int count) {
+		int w = from >>> 6;
+		int shift = from & 63;
+		long word = this.gen.getWord(w) >>> shift;
+		if(shift != 0 && w + 1 < this.gen.getWordCount())
+			word |= this.gen.getWord(w + 1) << (64 - shift);
+		return count == 64 ? word : word & ~(-1L << count);
+	}
+}
@@ -1,3 +1,7 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * This abstract class represents a cellular automaton rule that governs 
  * how cell states change. Any concrete subclass can be used with the 
@@ -9,14 +13,105 @@ public abstract class Rule {
 	
 	private int ruleNum;
 	
-	protected Rule(int ruleNum) {
+	/**
+	 * The compiled form of the rule: ruleTable[subruleNum] is 1 if the
+	 * subrule turns the cell ON. It is decoded from the rule number once,
+	 * so applying the rule never has to look at the bits of ruleNum again.
+	 */
+	private final byte[] ruleTable;
+	
+	/**
+	 * Construct a rule whose next state for subrule s is given by bit s 
+	 * of the rule number.
+	 * @param ruleNum
+	 * @param numSubrules the length of the rule table
+	 */
+	protected Rule(int ruleNum, int numSubrules) {
 		this.ruleNum = ruleNum;	
+		this.ruleTable = new byte[numSubrules];
+		for(int s = 0; s < numSubrules; ++s) {
+			this.ruleTable[s] = (byte) ((ruleNum >>> s) & 1);
+		}
+	}
+	
+	/**
+	 * Construct a rule whose next state for subrule s is given by bit s 
+	 * of a rule number that may not fit in an int. Only the lowest 32 bits
+	 * of the rule number are kept as the number returned by getRuleNum, so 
+	 * subclasses must keep the whole number themselves if they need it 
+	 * (see GeneralElementaryRule.getWolframCode).
+	 * @param ruleNum
+	 * @param numSubrules the length of the rule table
+	 */
+	protected Rule(BigInteger ruleNum, int numSubrules) {
+		this.ruleNum = ruleNum.intValue();
+		this.ruleTable = new byte[numSubrules];
+		for(int s = 0; s < numSubrules; ++s) {
+			this.ruleTable[s] = (byte) (ruleNum.testBit(s) ? 1 : 0);
+		}
 	}
 	
+	/**
+	 * Construct a rule without a rule table, as subclasses written before 
+	 * the table was introduced do. Such a rule is applied one Cell at a 
+	 * time by calling evolve(Cell[]) on the neighborhood of each Cell, and
+	 * getNextState cannot be used.
+	 * @param ruleNum
+	 * @deprecated Pass the length of the rule table to Rule(int, int) and
+	 * override getSubruleNum(Cell[]), so the rule can be compiled.
+	 */
+	@Deprecated
+	protected Rule(int ruleNum) {
+		this.ruleNum = ruleNum;
+		this.ruleTable = null;
+	}
+	
+	/**
+	 * Return the rule number. For a rule constructed from a BigInteger, 
+	 * this is only its lowest 32 bits.
+	 * @return
+	 */
 	public int getRuleNum() {
 		return this.ruleNum;
 	}
 	
+	/**
+	 * Return the state that the given subrule assigns to a cell in the 
+	 * next generation, by direct lookup in the compiled rule table. If the
+	 * rule was constructed without a table, throw an 
+	 * UnsupportedOperationException.
+	 * @param subruleNum
+	 * @return
+	 */
+	public CellState getNextState(int subruleNum) {
+		if(this.ruleTable == null)
+			throw new UnsupportedOperationException("The rule has no rule table: " + getClass().getName());
+		return this.ruleTable[subruleNum] != 0 ? CellState.ON : CellState.OFF;
+	}
+	
+	/**
+	 * Return 1 if the given subrule turns the cell ON and 0 otherwise, so 
+	 * that kernels can set the bit of the next state without branching.
+	 * @param subruleNum
+	 * @return
+	 */
+	int getNextBit(int subruleNum) {
+		return this.ruleTable[subruleNum];
+	}
+	
+	/**
+	 * Return the state the rule gives a cell with the given neighborhood in
+	 * the next generation, from the rule table if there is one and from 
+	 * evolve(Cell[]) otherwise.
+	 * @param neighborhood
+	 * @return
+	 */
+	CellState getNextState(Cell[] neighborhood) {
+		if(this.ruleTable == null)
+			return evolve(neighborhood).getState();
+		return getNextState(getSubruleNum(neighborhood));
+	}
+	
 	/**
 	 * Apply the rule to a given Generation, subject to the given boundary
 	 * conditions, to calculate the next Generation.
@@ -26,14 +121,414 @@ public abstract class Rule {
 	 * @return
 	 */
 	public Generation evolve(Generation gen, BoundaryConditions bc) {
-		Cell[] nextGeneration = new Cell[gen.size()];
-		for(int i = 0; i < gen.size(); ++i) {
-			Cell[] neighborhood = getNeighborhood(i, gen, bc);
-			EvolvedCell newCell = evolve(neighborhood);
-			nextGeneration[i] = newCell;
+		return evolve(gen, bc, true);
+	}
+	
+	/**
+	 * Apply the rule to a given Generation, subject to the given boundary
+	 * conditions, to calculate the next Generation. If trackSubrules is 
+	 * false, the subrule numbers are not recorded and the Cells of the 
+	 * next Generation are regular Cells. Apart from the next Generation 
+	 * itself, this method only allocates the ghost cells of the view padded 
+	 * by the boundary conditions (see BoundaryConditions.pad), a few words 
+	 * whatever the size of the Generation. For rules with more than 256 
+	 * subrules, the subrule numbers do not fit in a byte: they are 
+	 * recorded as ints, in a second pass over the padded Generation (see 
+	 * getSubruleNums).
+	 * @param gen
+	 * @param bc
+	 * @param trackSubrules
+	 * @return
+	 */
+	public Generation evolve(Generation gen, BoundaryConditions bc, boolean trackSubrules) {
+		return evolve(gen, bc, trackSubrules, null, 0);
+	}
+	
+	/**
+	 * Apply the rule to a given Generation as above, splitting the 
+	 * Generation into stripes that are evolved concurrently on the given 
+	 * pool. Stripes are whole words (multiples of 64 Cells) of at least 
+	 * threshold Cells, so each stripe writes its own part of the next 
+	 * Generation and only reads its neighbors, and the result is identical 
+	 * to the sequential one. If pool is null or the Generation is smaller 
+	 * than two stripes, the Generation is evolved sequentially.
+	 * @param gen
+	 * @param bc
+	 * @param trackSubrules
+	 * @param pool
+	 * @param threshold the smallest number of Cells worth evolving as a separate task
+	 * @return
+	 */
+	public Generation evolve(Generation gen, BoundaryConditions bc, boolean trackSubrules, 
+			ForkJoinPool pool, int threshold) {
+		boolean wide = trackSubrules && hasWideSubrules();
+		int size = gen.size();
+		long[] words = new long[Generation.wordCount(size)];
+		byte[] subrules = trackSubrules && !wide ? new byte[size] : null;
+		PaddedGeneration padded = bc.pad(gen, getRadius());
+		int stripeWords = Math.max(1, Generation.wordCount(threshold));
+		if(pool == null || words.length < 2 * stripeWords)
+			evolveRange(padded, bc, words, subrules, 0, words.length);
+		else
+			pool.invoke(new EvolveTask(this, padded, bc, words, subrules, 0, words.length, stripeWords));
+		if(wide)
+			return Generation.withWideSubrules(words, size, getSubruleNums(padded, bc));
+		return new Generation(words, size, subrules);
+	}
+	
+	/**
+	 * Return true if the subrule numbers of the rule do not fit in an 
+	 * unsigned byte, so they must be recorded as ints.
+	 * @return
+	 */
+	boolean hasWideSubrules() {
+		return getNumSubrules() > 0x100;
+	}
+	
+	/**
+	 * Return the number of the subrule that applies to each Cell of the 
+	 * given Generation. This is how the subrule numbers of rules with more 
+	 * than 256 subrules are recorded; subclasses override it to compute 
+	 * them faster than one neighborhood at a time.
+	 * @param padded the Generation, padded by the boundary conditions
+	 * @param bc
+	 * @return
+	 */
+	int[] getSubruleNums(PaddedGeneration padded, BoundaryConditions bc) {
+		Generation gen = padded.getGeneration();
+		int[] subruleNums = new int[gen.size()];
+		for(int i = 0; i < subruleNums.length; ++i) {
+			subruleNums[i] = this.ruleTable == null ? evolve(getNeighborhood(i, gen, bc)).getSubruleNum()
+					: getSubruleNum(i, gen, bc);
 		}
-		Generation nextGen = new Generation(nextGeneration);
-		return nextGen;
+		return subruleNums;
+	}
+	
+	/**
+	 * Apply the rule numSteps times to a given Generation with temporal 
+	 * blocking: the lattice is cut into tiles of about tileCells Cells, and
+	 * each tile, with a halo of radius Cells per step on each side, is 
+	 * evolved through up to stepsPerTile steps before moving on to the next 
+	 * (see evolveCone). While the tile is small enough to stay in cache, 
+	 * this reads the Generation from memory once per stepsPerTile steps 
+	 * instead of once per step. The halos are evolved by every tile that 
+	 * overlaps them, which costs about radius * stepsPerTile / tileCells 
+	 * extra work. The result is identical to evolving one step at a time; 
+	 * if trackSubrules is true, it records the subrule numbers of the last 
+	 * step. Only CircularBoundaryConditions and FixedBoundaryConditions are 
+	 * tiled; under other boundary conditions, or if a tile and its halos 
+	 * would cover the lattice, the Generation is evolved a step at a time.
+	 * @param gen
+	 * @param bc
+	 * @param trackSubrules
+	 * @param numSteps
+	 * @param stepsPerTile
+	 * @param tileCells
+	 * @return
+	 */
+	public Generation evolve(Generation gen, BoundaryConditions bc, boolean trackSubrules, 
+			int numSteps, int stepsPerTile, int tileCells) {
+		if(stepsPerTile < 1 || tileCells < 1)
+			throw new IllegalArgumentException("stepsPerTile and tileCells must be at least 1.");
+		int size = gen.size();
+		int tile = Generation.wordCount(tileCells) << 6;
+		for(int done = 0; done < numSteps; ) {
+			int steps = Math.min(stepsPerTile, numSteps - done);
+			boolean track = trackSubrules && done + steps == numSteps;
+			if(!isTiled(bc, size, tile, steps)) {
+				for(int i = 0; i < steps; ++i) {
+					gen = evolve(gen, bc, track && i == steps - 1);
+				}
+			}
+			else {
+				long[] words = new long[Generation.wordCount(size)];
+				byte[] subrules = null;
+				int[] wideSubrules = null;
+				for(int from = 0; from < size; from += tile) {
+					Generation window = evolveCone(gen, bc, steps, from, Math.min(size, from + tile), track);
+					for(int w = 0; w < window.getWordCount(); ++w) {
+						words[(from >>> 6) + w] = window.getWord(w);
+					}
+					if(window.hasWideSubrules()) {
+						if(wideSubrules == null)
+							wideSubrules = new int[size];
+						for(int i = 0; i < window.size(); ++i) {
+							wideSubrules[from + i] = window.getSubruleNum(i);
+						}
+					}
+					else if(window.hasSubrules()) {
+						if(subrules == null)
+							subrules = new byte[size];
+						for(int i = 0; i < window.size(); ++i) {
+							subrules[from + i] = (byte) window.getSubruleNum(i);
+						}
+					}
+				}
+				gen = wideSubrules != null ? Generation.withWideSubrules(words, size, wideSubrules)
+						: new Generation(words, size, subrules);
+			}
+			done += steps;
+		}
+		return gen;
+	}
+	
+	/**
+	 * Apply the rule numSteps times to a given Generation with temporal 
+	 * blocking as above, all in one pass over the tiles, and return every
+	 * Generation produced: that of step i + 1 at index i. Each tile writes 
+	 * its Cells of every step to the results as it goes, so the lattice is
+	 * still read from memory only once, and all numSteps Generations are 
+	 * held at once; numSteps is meant to be about the stepsPerTile of the 
+	 * method above. If trackSubrules is true, every Generation records its
+	 * subrule numbers; for rules with more than 256 subrules, the 
+	 * Generations are then evolved a step at a time.
+	 * @param gen
+	 * @param bc
+	 * @param trackSubrules
+	 * @param numSteps
+	 * @param tileCells
+	 * @return
+	 */
+	public Generation[] evolveSteps(Generation gen, BoundaryConditions bc, boolean trackSubrules, 
+			int numSteps, int tileCells) {
+		if(numSteps < 1 || tileCells < 1)
+			throw new IllegalArgumentException("numSteps and tileCells must be at least 1.");
+		int size = gen.size();
+		int tile = Generation.wordCount(tileCells) << 6;
+		Generation[] steps = new Generation[numSteps];
+		if(!isTiled(bc, size, tile, numSteps) || (trackSubrules && hasWideSubrules())) {
+			for(int i = 0; i < numSteps; ++i) {
+				gen = evolve(gen, bc, trackSubrules);
+				steps[i] = gen;
+			}
+			return steps;
+		}
+		long[][] words = new long[numSteps][Generation.wordCount(size)];
+		byte[][] subrules = trackSubrules ? new byte[numSteps][size] : null;
+		for(int from = 0; from < size; from += tile) {
+			evolveCone(gen, bc, numSteps, from, Math.min(size, from + tile), trackSubrules, words, subrules);
+		}
+		for(int i = 0; i < numSteps; ++i) {
+			steps[i] = new Generation(words[i], size, subrules == null ? null : subrules[i]);
+		}
+		return steps;
+	}
+	
+	/**
+	 * Return true if a Generation of size Cells is cut into tiles of tile 
+	 * Cells for steps steps: the boundary conditions must be supported, and
+	 * a tile with its halos must not cover the lattice.
+	 * @param bc
+	 * @param size
+	 * @param tile
+	 * @param steps
+	 * @return
+	 */
+	private boolean isTiled(BoundaryConditions bc, int size, int tile, int steps) {
+		return tile < size && (bc instanceof FixedBoundaryConditions 
+				|| (bc instanceof CircularBoundaryConditions && tile + 2L * getRadius() * steps < size));
+	}
+	
+	/**
+	 * Evolve the light cone of the Cells with indices from fromIdx 
+	 * (inclusive) to toIdx (exclusive) for numSteps steps, and return the 
+	 * states of those Cells as a Generation of toIdx - fromIdx Cells, with 
+	 * the subrule numbers of the last step if trackSubrules is true. Only 
+	 * the Cells within radius * numSteps of the range are evolved. Under 
+	 * FixedBoundaryConditions the window is clipped at the ends of the 
+	 * lattice, and under CircularBoundaryConditions it wraps around. A side
+	 * of the window that is not an end of the lattice is evolved as if next
+	 * to OFF Cells, which only makes the Cells within radius * numSteps of 
+	 * it wrong. Return null under other boundary conditions, or
+	 * if the window would cover the whole circular lattice.
+	 * @param gen
+	 * @param bc
+	 * @param numSteps at least 1
+	 * @param fromIdx
+	 * @param toIdx
+	 * @param trackSubrules
+	 * @return
+	 */
+	Generation evolveCone(Generation gen, BoundaryConditions bc, int numSteps, int fromIdx, int toIdx, 
+			boolean trackSubrules) {
+		return evolveCone(gen, bc, numSteps, fromIdx, toIdx, trackSubrules, null, null);
+	}
+	
+	/**
+	 * Evolve the light cone as above. If stepWords is not null, also copy
+	 * the states of the range after step i + 1 into stepWords[i], from 
+	 * word fromIdx / 64 on (fromIdx must be a multiple of 64), and, if 
+	 * subrule numbers are recorded, those of every step into 
+	 * stepSubrules[i] from index fromIdx on.
+	 * @param gen
+	 * @param bc
+	 * @param numSteps
+	 * @param fromIdx
+	 * @param toIdx
+	 * @param trackSubrules
+	 * @param stepWords
+	 * @param stepSubrules
+	 * @return
+	 */
+	private Generation evolveCone(Generation gen, BoundaryConditions bc, int numSteps, int fromIdx, int toIdx, 
+			boolean trackSubrules, long[][] stepWords, byte[][] stepSubrules) {
+		int size = gen.size();
+		int radius = getRadius();
+		long reach = (long) radius * numSteps;
+		long lo = fromIdx - reach;
+		long hi = toIdx + reach;
+		boolean leftEnd = false;
+		boolean rightEnd = false;
+		CellState left = CellState.OFF;
+		CellState right = CellState.OFF;
+		Generation window;
+		if(bc instanceof FixedBoundaryConditions) {
+			FixedBoundaryConditions fixed = (FixedBoundaryConditions) bc;
+			if(lo <= 0) {
+				lo = 0;
+				leftEnd = true;
+				left = fixed.getLeftState();
+			}
+			if(hi >= size) {
+				hi = size;
+				rightEnd = true;
+				right = fixed.getRightState();
+			}
+			window = gen.range((int) lo, (int) hi);
+		}
+		else if(bc instanceof CircularBoundaryConditions && lo >= 0 && hi <= size) {
+			window = gen.range((int) lo, (int) hi);
+		}
+		else if(bc instanceof CircularBoundaryConditions && hi - lo < size) {
+			int width = (int) (hi - lo);
+			long[] words = new long[Generation.wordCount(width)];
+			for(int i = 0; i < width; ++i) {
+				if(gen.isOn(Math.floorMod(lo + i, size)))
+					words[i >>> 6] |= 1L << i;
+			}
+			window = new Generation(words, width, null);
+		}
+		else {
+			return null;
+		}
+		
+		// The window keeps its width, and the wrong Cells spread inward from 
+		// the sides that are not ends by the radius every step, so they 
+		// never reach the range. Two word arrays are used in turn for the 
+		// Generations of the window, and one view is refilled every step.
+		BoundaryConditions edges = new FixedBoundaryConditions(left, right);
+		int width = window.size();
+		long[] spare = new long[window.getWordCount()];
+		long[] owned = null;
+		PaddedGeneration padded = new PaddedGeneration(window, radius);
+		for(int i = 0; i < numSteps; ++i) {
+			if(i > 0)
+				padded.fill(window);
+			for(int offset = 1; offset <= radius; ++offset) {
+				padded.setGhostState(-offset, left);
+				padded.setGhostState(width - 1 + offset, right);
+			}
+			long[] words = spare;
+			Arrays.fill(words, 0L);
+			boolean track = trackSubrules && (i == numSteps - 1 || stepWords != null);
+			byte[] subrules = track && !hasWideSubrules() ? new byte[width] : null;
+			evolveRange(padded, edges, words, subrules, 0, words.length);
+			spare = owned != null ? owned : new long[words.length];
+			owned = words;
+			if(track && hasWideSubrules())
+				window = Generation.withWideSubrules(words, width, getSubruleNums(padded, edges));
+			else
+				window = new Generation(words, width, subrules);
+			if(stepWords != null) {
+				copyRange(words, (int) (fromIdx - lo), toIdx - fromIdx, stepWords[i], fromIdx >>> 6);
+				if(subrules != null)
+					System.arraycopy(subrules, (int) (fromIdx - lo), stepSubrules[i], fromIdx, toIdx - fromIdx);
+			}
+		}
+		return window.range((int) (fromIdx - lo), (int) (fromIdx - lo) + toIdx - fromIdx);
+	}
+	
+	/**
+	 * Copy count bits of src, starting at bit from, to dst, starting at 
+	 * the beginning of word toWord. The bits past count in the last word 
+	 * written are cleared.
+	 * @param src
+	 * @param from
+	 * @param count
+	 * @param dst
+	 * @param toWord
+	 */
+	private static void copyRange(long[] src, int from, int count, long[] dst, int toWord) {
+		int first = from >>> 6;
+		int shift = from & 63;
+		int n = Generation.wordCount(count);
+		for(int w = 0; w < n; ++w) {
+			long word = src[first + w] >>> shift;
+			if(shift != 0 && first + w + 1 < src.length)
+				word |= src[first + w + 1] << (64 - shift);
+			dst[toWord + w] = word;
+		}
+		if((count & 63) != 0)
+			dst[toWord + n - 1] &= -1L >>> (64 - (count & 63));
+	}
+	
+	/**
+	 * Compute the words fromWord (inclusive) to toWord (exclusive) of the 
+	 * next Generation, and the subrule numbers of their Cells if subrules 
+	 * is not null. Nothing outside this range is written.
+	 * @param padded the Generation, padded by the boundary conditions
+	 * @param bc
+	 * @param words the packed states of the next Generation
+	 * @param subrules the subrule numbers of the next Generation, or null
+	 * @param fromWord
+	 * @param toWord
+	 */
+	void evolveRange(PaddedGeneration padded, BoundaryConditions bc, long[] words, byte[] subrules, 
+			int fromWord, int toWord) {
+		if(evolveWords(padded, words, subrules, fromWord, toWord))
+			return;
+		
+		Generation gen = padded.getGeneration();
+		int end = Math.min(gen.size(), toWord << 6);
+		if(this.ruleTable == null) {
+			for(int i = fromWord << 6; i < end; ++i) {
+				EvolvedCell next = evolve(getNeighborhood(i, gen, bc));
+				if(next.getState() == CellState.ON)
+					words[i >>> 6] |= 1L << i;
+				if(subrules != null)
+					subrules[i] = (byte) next.getSubruleNum();
+			}
+			return;
+		}
+		for(int i = fromWord << 6; i < end; ++i) {
+			int subruleNum = getSubruleNum(i, gen, bc);
+			if(getNextState(subruleNum) == CellState.ON)
+				words[i >>> 6] |= 1L << i;
+			if(subrules != null)
+				subrules[i] = (byte) subruleNum;
+		}
+	}
+	
+	/**
+	 * Apply the rule to a whole word (64 Cells) of the packed Generation
+	 * at a time, for the words fromWord (inclusive) to toWord (exclusive). 
+	 * The Generation is padded with getRadius() ghost cells on each side, 
+	 * so the neighbors of every Cell can be read without checking the 
+	 * boundary conditions. Subclasses that can compute the next states 
+	 * with bitwise logic or a sliding window override this method. Return 
+	 * false if the rule has no such path, in which case the rule is 
+	 * applied one Cell at a time.
+	 * @param padded the Generation, padded by the boundary conditions
+	 * @param words the packed states of the next Generation
+	 * @param subrules the subrule numbers of the next Generation, or null 
+	 * if they are not recorded
+	 * @param fromWord
+	 * @param toWord
+	 * @return
+	 */
+	protected boolean evolveWords(PaddedGeneration padded, long[] words, byte[] subrules, 
+			int fromWord, int toWord) {
+		return false;
 	}
 	
 	/**
@@ -43,6 +538,19 @@ public abstract class Rule {
 	 */
 	public abstract int getNumSubrules();
 	
+	/**
+	 * Return the radius of the neighborhood, i.e., the largest distance 
+	 * between a cell and a neighbor that affects its next state. By default 
+	 * this is found from the length of a neighborhood, which is assumed to 
+	 * be the cell itself and radius cells on each side; subclasses with 
+	 * a fixed radius override this method.
+	 * @return
+	 */
+	public int getRadius() {
+		Generation gen = new Generation(new CellState[] {CellState.OFF});
+		return getNeighborhood(0, gen, new CircularBoundaryConditions()).length / 2;
+	}
+	
 	/**
 	 * Return the neighborhood of the cell with index cellIdx subject
 	 * to the given boundary conditions. The neighborhood of a cell
@@ -56,6 +564,34 @@ public abstract class Rule {
 	 */
 	public abstract Cell[] getNeighborhood(int cellIdx, Generation gen, BoundaryConditions bc);
 	
+	/**
+	 * Return the number of the subrule that applies to a cell with the 
+	 * given neighborhood, i.e., the index into the rule table. By default
+	 * this is the subrule number of the EvolvedCell returned by 
+	 * evolve(Cell[]), for subclasses without a rule table; subclasses with
+	 * one override it to compute the index directly.
+	 * @param neighborhood
+	 * @return
+	 */
+	public int getSubruleNum(Cell[] neighborhood) {
+		return evolve(neighborhood).getSubruleNum();
+	}
+	
+	/**
+	 * Return the number of the subrule that applies to the cell with index
+	 * cellIdx subject to the given boundary conditions. This is equivalent
+	 * to getSubruleNum(getNeighborhood(cellIdx, gen, bc)); subclasses 
+	 * override it to read the neighbors directly without building the 
+	 * neighborhood array.
+	 * @param cellIdx
+	 * @param gen
+	 * @param bc
+	 * @return
+	 */
+	public int getSubruleNum(int cellIdx, Generation gen, BoundaryConditions bc) {
+		return getSubruleNum(getNeighborhood(cellIdx, gen, bc));
+	}
+	
 	/**
 	 * Apply the rule to a cell with the given neighborhood. The method 
 	 * returns a new EvolvedCell that represents the cell in the next generation.
@@ -0,0 +1,260 @@
+/**
+ * This class runs many automata at once: every combination of a set of
+ * Rules, a set of random seeds and a set of BoundaryConditions. The runs
+ * are scheduled on an ExecutorService with a bounded number of runs in
+ * flight, and the measurements of each run are passed to a SweepAggregator
+ * as soon as it finishes. A run keeps only its current Generation, so the
+ * memory used does not grow with the number of steps.
+ * @author User
+ *
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RuleSweep {
+
+	private int width;
+	private int numSteps;
+	private List<Rule> rules = new ArrayList<Rule>();
+	private List<Long> seeds = new ArrayList<Long>();
+	private List<BoundaryConditions> bcs = new ArrayList<BoundaryConditions>();
+
+	private AtomicLong completedRuns = new AtomicLong();
+	private AtomicLong cellsEvolved = new AtomicLong();
+	private volatile long startNanos;
+	private volatile long endNanos;
+
+	/**
+	 * Construct an empty sweep in which each run evolves a random
+	 * Generation of the given width the given number of steps.
+	 * @param width
+	 * @param numSteps
+	 */
+	public RuleSweep(int width, int numSteps) {
+		if(width < 1 || numSteps < 1)
+			throw new IllegalArgumentException("width and numSteps must be at least 1.");
+		this.width = width;
+		this.numSteps = numSteps;
+	}
+
+	/**
+	 * Add the ElementaryRules with numbers from fromRuleNum to toRuleNum, inclusive.
+	 * @param fromRuleNum
+	 * @param toRuleNum
+	 * @throws InvalidRuleNumException
+	 */
+	public void addElementaryRules(int fromRuleNum, int toRuleNum) throws InvalidRuleNumException {
+		for(int i = fromRuleNum; i <= toRuleNum; ++i) {
+			this.rules.add(new ElementaryRule(i));
+		}
+	}
+
+	/**
+	 * Add the TotalisticRules with numbers from fromRuleNum to toRuleNum, inclusive.
+	 * @param fromRuleNum
+	 * @param toRuleNum
+	 * @throws InvalidRuleNumException
+	 */
+	public void addTotalisticRules(int fromRuleNum, int toRuleNum) throws InvalidRuleNumException {
+		for(int i = fromRuleNum; i <= toRuleNum; ++i) {
+			this.rules.add(new TotalisticRule(i));
+		}
+	}
+
+	public void addRule(Rule rule) {
+		this.rules.add(rule);
+	}
+
+	/**
+	 * Add seeds for the random initial Generations. The same seed always
+	 * produces the same initial Generation.
+	 * @param seeds
+	 */
+	public void addSeeds(long... seeds) {
+		for(long seed : seeds) {
+			this.seeds.add(seed);
+		}
+	}
+
+	/**
+	 * Add boundary conditions to run every rule and seed under. The object
+	 * is shared by concurrent runs, so it must not have mutable state.
+	 * @param bc
+	 */
+	public void addBoundaryConditions(BoundaryConditions bc) {
+		this.bcs.add(bc);
+	}
+
+	/**
+	 * Return the number of runs in the sweep.
+	 * @return
+	 */
+	public long getTotalRuns() {
+		return (long) this.rules.size() * this.seeds.size() * this.bcs.size();
+	}
+
+	/**
+	 * Return the number of runs that have finished so far.
+	 * @return
+	 */
+	public long getCompletedRuns() {
+		return this.completedRuns.get();
+	}
+
+	/**
+	 * Return the number of Cells evolved so far, summed over all runs.
+	 * @return
+	 */
+	public long getCellsEvolved() {
+		return this.cellsEvolved.get();
+	}
+
+	/**
+	 * Return the number of runs finished per second since the sweep started.
+	 * @return
+	 */
+	public double getRunsPerSecond() {
+		return perSecond(this.completedRuns.get());
+	}
+
+	/**
+	 * Return the number of Cells evolved per second since the sweep started.
+	 * @return
+	 */
+	public double getCellsPerSecond() {
+		return perSecond(this.cellsEvolved.get());
+	}
+
+	private double perSecond(long count) {
+		long start = this.startNanos;
+		if(start == 0)
+			return 0;
+		long end = this.endNanos != 0 ? this.endNanos : System.nanoTime();
+		return count * 1e9 / Math.max(1, end - start);
+	}
+
+	/**
+	 * Run the sweep on a new fixed thread pool with the given number of threads.
+	 * @param parallelism
+	 * @param aggregator
+	 * @throws InterruptedException
+	 */
+	public void run(int parallelism, SweepAggregator aggregator) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		try {
+			run(executor, parallelism, aggregator);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Run every combination of rule, seed and boundary conditions on the given
+	 * executor, with at most maxInFlight runs submitted at a time, and return
+	 * when all of them have finished. Any executor can be used, including one
+	 * that starts a virtual thread per task. If a run throws an exception,
+	 * no further runs are started and the exception is rethrown.
+	 * @param executor
+	 * @param maxInFlight
+	 * @param aggregator
+	 * @throws InterruptedException
+	 */
+	public void run(ExecutorService executor, int maxInFlight, SweepAggregator aggregator) throws InterruptedException {
+		if(maxInFlight < 1)
+			throw new IllegalArgumentException("maxInFlight must be at least 1.");
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+		this.completedRuns.set(0);
+		this.cellsEvolved.set(0);
+		this.endNanos = 0;
+		this.startNanos = System.nanoTime();
+
+		sweep:
+		for(Rule rule : this.rules) {
+			for(long seed : this.seeds) {
+				for(BoundaryConditions bc : this.bcs) {
+					inFlight.acquire();
+					if(failure.get() != null) {
+						inFlight.release();
+						break sweep;
+					}
+					executor.execute(() -> {
+						try {
+							SweepResult result = runOne(rule, seed, bc);
+							synchronized(aggregator) {
+								aggregator.accept(result);
+							}
+							this.completedRuns.incrementAndGet();
+						}
+						catch(RuntimeException e) {
+							failure.compareAndSet(null, e);
+						}
+						finally {
+							inFlight.release();
+						}
+					});
+				}
+			}
+		}
+		inFlight.acquire(maxInFlight);
+		inFlight.release(maxInFlight);
+		this.endNanos = System.nanoTime();
+		if(failure.get() != null)
+			throw failure.get();
+	}
+
+	/**
+	 * Evolve one automaton, measuring each step as it is produced and
+	 * keeping only the current Generation. The subrule counts of a step are
+	 * read from the subrule numbers recorded while evolving it, so each Cell
+	 * is only evaluated once.
+	 * @param rule
+	 * @param seed
+	 * @param bc
+	 * @return
+	 */
+	private SweepResult runOne(Rule rule, long seed, BoundaryConditions bc) {
+		int[] hammingDistances = new int[this.numSteps];
+		int[][] subruleCounts = new int[this.numSteps][];
+		Generation gen = randomGeneration(this.width, seed);
+		for(int i = 0; i < this.numSteps; ++i) {
+			Generation next = rule.evolve(gen, bc, true);
+			if(next.hasSubrules()) {
+				subruleCounts[i] = new int[rule.getNumSubrules()];
+				next.addSubruleCounts(subruleCounts[i], 0);
+			}
+			else {
+				subruleCounts[i] = AutomatonMeasurements.subruleCount(rule, gen, bc);
+			}
+			hammingDistances[i] = AutomatonMeasurements.hammingDistance(gen, next);
+			this.cellsEvolved.addAndGet(this.width);
+			gen = next;
+		}
+		return new SweepResult(rule, seed, bc, hammingDistances, subruleCounts);
+	}
+
+	/**
+	 * Return a Generation of the given width whose Cells are ON or OFF at
+	 * random, determined by the seed.
+	 * @param width
+	 * @param seed
+	 * @return
+	 */
+	public static Generation randomGeneration(int width, long seed) {
+		Random random = new Random(seed);
+		long[] words = new long[Generation.wordCount(width)];
+		for(int i = 0; i < words.length; ++i) {
+			words[i] = random.nextLong();
+		}
+		if((width & 63) != 0)
+			words[words.length - 1] &= -1L >>> (64 - (width & 63));
+		return new Generation(words, width, null);
+	}
+}
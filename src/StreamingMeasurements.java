@@ -0,0 +1,112 @@
+/**
+ * This class accumulates the measurements of AutomatonMeasurements while
+ * an Automaton evolves, instead of revisiting its history afterwards.
+ * Register it with Automaton.addEvolutionListener; from then on, each
+ * evolution step appends its Hamming distance, subrule counts and ON-cell
+ * density to primitive arrays. The measurements stay available even if the
+ * Automaton no longer retains the Generations they were taken from.
+ *
+ * Entry k of each array belongs to evolution step getFirstStep() + k. If
+ * the listener is registered before the first step, entry k is the same
+ * as entry k of AutomatonMeasurements.hammingDistances and subruleCounts.
+ * @author User
+ *
+ */
+import java.util.Arrays;
+
+public class StreamingMeasurements implements EvolutionListener {
+
+	private int firstStep = -1;
+	private int count;
+	private int numSubrules;
+	private int size;
+	private int[] hammingDistances = new int[16];
+	private int[] onCounts = new int[16];
+
+	/**
+	 * The subrule counts of all steps in one array, numSubrules per step.
+	 */
+	private int[] subruleCounts = new int[0];
+
+	@Override
+	public void generationEvolved(Automaton a, int stepNum, Generation previous, Generation next) {
+		if(this.firstStep < 0) {
+			this.firstStep = stepNum;
+			this.numSubrules = a.getRule().getNumSubrules();
+			this.size = next.size();
+			this.subruleCounts = new int[16 * this.numSubrules];
+		}
+		if(this.count == this.hammingDistances.length) {
+			int capacity = this.count * 2;
+			this.hammingDistances = Arrays.copyOf(this.hammingDistances, capacity);
+			this.onCounts = Arrays.copyOf(this.onCounts, capacity);
+			this.subruleCounts = Arrays.copyOf(this.subruleCounts, capacity * this.numSubrules);
+		}
+
+		this.hammingDistances[this.count] = AutomatonMeasurements.hammingDistance(previous, next);
+		this.onCounts[this.count] = next.countOn();
+		int offset = this.count * this.numSubrules;
+		if(next.hasSubrules()) {
+			next.addSubruleCounts(this.subruleCounts, offset);
+		}
+		else {
+			Rule rule = a.getRule();
+			BoundaryConditions bc = a.getBoundaryConditions();
+			for(int i = 0; i < previous.size(); ++i) {
+				this.subruleCounts[offset + rule.getSubruleNum(i, previous, bc)]++;
+			}
+		}
+		this.count++;
+	}
+
+	/**
+	 * Return the evolution step of the first entry, or -1 if no step
+	 * has been recorded yet.
+	 * @return
+	 */
+	public int getFirstStep() {
+		return this.firstStep;
+	}
+
+	/**
+	 * Return the number of evolution steps recorded.
+	 * @return
+	 */
+	public int getStepCount() {
+		return this.count;
+	}
+
+	/**
+	 * Return the Hamming distance between the Generations before and after
+	 * each recorded step.
+	 * @return
+	 */
+	public int[] getHammingDistances() {
+		return Arrays.copyOf(this.hammingDistances, this.count);
+	}
+
+	/**
+	 * Return the number of times each subrule was applied in each recorded step.
+	 * @return
+	 */
+	public int[][] getSubruleCounts() {
+		int[][] counts = new int[this.count][];
+		for(int i = 0; i < this.count; ++i) {
+			counts[i] = Arrays.copyOfRange(this.subruleCounts, i * this.numSubrules, (i + 1) * this.numSubrules);
+		}
+		return counts;
+	}
+
+	/**
+	 * Return the fraction of Cells that are ON in the Generation produced
+	 * by each recorded step.
+	 * @return
+	 */
+	public double[] getDensities() {
+		double[] densities = new double[this.count];
+		for(int i = 0; i < this.count; ++i) {
+			densities[i] = this.size == 0 ? 0 : (double) this.onCounts[i] / this.size;
+		}
+		return densities;
+	}
+}
@@ -0,0 +1,16 @@
+
+/**
+ * This interface receives the result of each run of a RuleSweep as soon
+ * as the run finishes. The RuleSweep never calls accept from two threads
+ * at the same time, so implementations do not need to be thread-safe.
+ * @author User
+ *
+ */
+public interface SweepAggregator {
+
+	/**
+	 * Combine the measurements of one finished run.
+	 * @param result
+	 */
+	void accept(SweepResult result);
+}
@@ -0,0 +1,57 @@
+/**
+ * This class holds the measurements of one run of a RuleSweep: the 
+ * Hamming distance and the subrule counts of every evolution step of 
+ * one Rule from one seed under one kind of boundary conditions.
+ * @author User
+ *
+ */
+public class SweepResult {
+
+	private Rule rule;
+	private long seed;
+	private BoundaryConditions bc;
+	private int[] hammingDistances;
+	private int[][] subruleCounts;
+
+	public SweepResult(Rule rule, long seed, BoundaryConditions bc, int[] hammingDistances, int[][] subruleCounts) {
+		this.rule = rule;
+		this.seed = seed;
+		this.bc = bc;
+		this.hammingDistances = hammingDistances;
+		this.subruleCounts = subruleCounts;
+	}
+
+	public Rule getRule() {
+		return this.rule;
+	}
+
+	/**
+	 * Return the seed of the random initial Generation.
+	 * @return
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	public BoundaryConditions getBoundaryConditions() {
+		return this.bc;
+	}
+
+	/**
+	 * Return the Hamming distance of each evolution step, 
+	 * as AutomatonMeasurements.hammingDistances would.
+	 * @return
+	 */
+	public int[] getHammingDistances() {
+		return this.hammingDistances;
+	}
+
+	/**
+	 * Return the subrule counts of each evolution step, 
+	 * as AutomatonMeasurements.subruleCounts would.
+	 * @return
+	 */
+	public int[][] getSubruleCounts() {
+		return this.subruleCounts;
+	}
+}
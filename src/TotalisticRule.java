@@ -6,10 +6,19 @@
  */
 public class TotalisticRule extends Rule{
 	
-	private final int CONFIGUATION_NUM = 6;
+	private static final int CONFIGUATION_NUM = 6;
+	
+	/**
+	 * countMasks[k] is all ones if a cell with k ON cells in its 
+	 * neighborhood turns ON, and all zeros otherwise.
+	 */
+	private final long[] countMasks = new long[CONFIGUATION_NUM];
 	
 	public TotalisticRule(int ruleNum) throws InvalidRuleNumException {
-		super(checkRuleNum(ruleNum));
+		super(checkRuleNum(ruleNum), CONFIGUATION_NUM);
+		for(int k = 0; k < CONFIGUATION_NUM; ++k) {
+			this.countMasks[k] = getNextState(k) == CellState.ON ? -1L : 0L;
+		}
 	}
 	
 	private static int checkRuleNum (int ruleNum) throws InvalidRuleNumException {
@@ -26,7 +35,15 @@ public class TotalisticRule extends Rule{
 	 * @return
 	 */
 	public int getNumSubrules() {
-		return this.CONFIGUATION_NUM;
+		return CONFIGUATION_NUM;
+	}
+
+	@Override
+	/**
+	 * Return the radius of the neighborhood, which is 2.
+	 */
+	public int getRadius() {
+		return 2;
 	}
 
 	@Override
@@ -54,27 +71,93 @@ public class TotalisticRule extends Rule{
 	 * @return
 	 */
 	public EvolvedCell evolve(Cell[] neighborhood) {
-		
+		int subruleNum = getSubruleNum(neighborhood);
+		return new EvolvedCell(getNextState(subruleNum), subruleNum);
+	}
+
+	@Override
+	/**
+	 * Return the total number of ON cells in the neighborhood.
+	 */
+	public int getSubruleNum(Cell[] neighborhood) {
 		int subruleNum = 0;
 		for (int i = 0; i < neighborhood.length; ++i) {
-			if(neighborhood[i].getState().equals(CellState.ON)) {
+			if(neighborhood[i].getState() == CellState.ON)
 				subruleNum++;
-			}
 		}
-		
-		String base2RuleNum = Integer.toString(getRuleNum(), 2);
-		for(int i = base2RuleNum.length(); i < CONFIGUATION_NUM; ++i) {
-			base2RuleNum =  "0" + base2RuleNum;
+		return subruleNum;
+	}
+
+	@Override
+	/**
+	 * Count the ON cells within distance 2 of the cell without building
+	 * a neighborhood array.
+	 */
+	public int getSubruleNum(int cellIdx, Generation gen, BoundaryConditions bc) {
+		int subruleNum = gen.isOn(cellIdx) ? 1 : 0;
+		for (int offset = 1; offset <= 2; ++offset) {
+			if(bc.getNeighbor(cellIdx, -offset, gen).getState() == CellState.ON)
+				subruleNum++;
+			if(bc.getNeighbor(cellIdx, offset, gen).getState() == CellState.ON)
+				subruleNum++;
 		}
-		
-		char nextStateSymbol = base2RuleNum.charAt(CONFIGUATION_NUM - subruleNum - 1);
-		if(nextStateSymbol == '0')
-			nextStateSymbol = '.';
-		else if(nextStateSymbol == '1')
-			nextStateSymbol = 'O';
-		EvolvedCell evolvedCell = new EvolvedCell(CellState.getState(nextStateSymbol), subruleNum);
-		
-		return evolvedCell;
+		return subruleNum;
+	}
+
+	@Override
+	/**
+	 * Apply the rule to 64 cells at a time. The five bit-planes of the
+	 * neighborhood (the words of the cells 2 and 1 to the left, the centers,
+	 * and the cells 1 and 2 to the right) are read from the padded 
+	 * Generation and added with two full adders, giving the count of ON 
+	 * cells of every cell as three bit-planes. The next states are then 
+	 * selected from the bits of the rule number by a tree of bitwise 
+	 * multiplexers on those planes.
+	 */
+	protected boolean evolveWords(PaddedGeneration padded, long[] words, byte[] subrules, 
+			int fromWord, int toWord) {
+		Generation gen = padded.getGeneration();
+		int size = gen.size();
+		if(size == 0)
+			return true;
+
+		long[] m = this.countMasks;
+		int wordCount = gen.getWordCount();
+		for(int w = fromWord; w < toWord; ++w) {
+			int first = w << 6;
+			long a = padded.wordAt(first - 2);
+			long b = padded.wordAt(first - 1);
+			long c = gen.getWord(w);
+			long d = padded.wordAt(first + 1);
+			long e = padded.wordAt(first + 2);
+
+			// Carry-save addition: a + b + c = s1 + 2 * c1, s1 + d + e = ones + 2 * c2.
+			long ab = a ^ b;
+			long s1 = ab ^ c;
+			long c1 = (a & b) | (c & ab);
+			long de = d ^ e;
+			long ones = s1 ^ de;
+			long c2 = (d & e) | (s1 & de);
+			long twos = c1 ^ c2;
+			long fours = c1 & c2;
+
+			long next01 = (ones & m[1]) | (~ones & m[0]);
+			long next23 = (ones & m[3]) | (~ones & m[2]);
+			long next45 = (ones & m[5]) | (~ones & m[4]);
+			long next03 = (twos & next23) | (~twos & next01);
+			words[w] = (fours & next45) | (~fours & next03);
+
+			if(subrules == null)
+				continue;
+			int count = Math.min(Generation.WORD_SIZE, size - first);
+			for(int j = 0; j < count; ++j) {
+				subrules[first + j] = (byte) (((ones >>> j) & 1) | (((twos >>> j) & 1) << 1)
+						| (((fours >>> j) & 1) << 2));
+			}
+		}
+		if(toWord == wordCount && (size & 63) != 0)
+			words[wordCount - 1] &= -1L >>> (64 - (size & 63));
+		return true;
 	}
 
 	@Override
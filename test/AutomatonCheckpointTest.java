@@ -0,0 +1,167 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AutomatonCheckpointTest {
+
+	private static byte[] save(Automaton a) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		AutomatonCheckpoint.save(a, out);
+		return out.toByteArray();
+	}
+
+	private static Automaton roundTrip(Automaton a) throws Exception {
+		return AutomatonCheckpoint.load(new ByteArrayInputStream(save(a)));
+	}
+
+	/**
+	 * Assert that the loaded Automaton is in the same state as the saved
+	 * one, and that both evolve to the same Generations.
+	 * @param a
+	 * @param loaded
+	 * @throws Exception
+	 */
+	static void assertSameEvolution(Automaton a, Automaton loaded) throws Exception {
+		assertEquals(a.getTotalSteps(), loaded.getTotalSteps());
+		assertEquals(a.getCycleStart(), loaded.getCycleStart());
+		assertEquals(a.getCyclePeriod(), loaded.getCyclePeriod());
+		assertEquals(a.isSubruleTracking(), loaded.isSubruleTracking());
+		assertEquals(a.getGenerationHistory().getClass(), loaded.getGenerationHistory().getClass());
+		assertEquals(a.getGenerationHistory().size(), loaded.getGenerationHistory().size());
+		for(int i = 0; i <= a.getTotalSteps(); ++i) {
+			RuleTest.assertSameCells(a.getGeneration(i), loaded.getGeneration(i));
+		}
+		a.evolve(40);
+		loaded.evolve(40);
+		for(int i = a.getTotalSteps() - 40; i <= a.getTotalSteps(); ++i) {
+			RuleTest.assertSameCells(a.getGeneration(i), loaded.getGeneration(i));
+		}
+	}
+
+	@Test
+	public void roundTripsContinueTheEvolution() throws Exception {
+		Rule[] rules = {new ElementaryRule(110), new TotalisticRule(22)};
+		BoundaryConditions[] conditions = {new CircularBoundaryConditions(),
+				new FixedBoundaryConditions(CellState.ON, CellState.OFF)};
+		for(Rule rule : rules) {
+			for(BoundaryConditions bc : conditions) {
+				Generation init = new Generation(GenerationTest.randomStates(129, 9));
+				Automaton list = new Automaton(rule, init, bc);
+				list.evolve(60);
+				assertSameEvolution(list, roundTrip(list));
+
+				Automaton checkpoints = new Automaton(rule, init, bc);
+				checkpoints.setRetentionPolicy(8, 4, Long.MAX_VALUE);
+				checkpoints.setSubruleTracking(false);
+				checkpoints.evolve(60);
+				assertSameEvolution(checkpoints, roundTrip(checkpoints));
+			}
+		}
+	}
+
+	@Test
+	public void deltaHistoryIsSavedAsDeltas() throws Exception {
+		Generation init = new Generation(GenerationTest.randomStates(2000, 21));
+		Rule[] rules = {new ElementaryRule(4), new ElementaryRule(110),
+				new GeneralElementaryRule(4, new BigInteger(512, new Random(5)))};
+		for(Rule rule : rules) {
+			Automaton a = new Automaton(rule, init, new CircularBoundaryConditions());
+			a.setGenerationHistory(new DeltaHistory(6));
+			a.evolve(20);
+			a.setSubruleTracking(false);
+			a.evolve(10);
+			Automaton loaded = roundTrip(a);
+			assertEquals(6, ((DeltaHistory) loaded.getGenerationHistory()).getKeyframeInterval());
+			assertSameEvolution(a, loaded);
+		}
+
+		Automaton list = new Automaton(new ElementaryRule(4), init, new CircularBoundaryConditions());
+		list.setSubruleTracking(false);
+		list.evolve(30);
+		Automaton deltas = new Automaton(new ElementaryRule(4), init, new CircularBoundaryConditions());
+		deltas.setSubruleTracking(false);
+		deltas.setGenerationHistory(new DeltaHistory(10));
+		deltas.evolve(30);
+		assertTrue(4 * save(deltas).length < save(list).length);
+	}
+
+	@Test
+	public void detectedCycleIsRestored() throws Exception {
+		Automaton a = new Automaton(new ElementaryRule(90), new Generation("...O......"),
+				new CircularBoundaryConditions());
+		a.setCycleDetection(true);
+		a.evolve(100);
+		Automaton loaded = roundTrip(a);
+		assertEquals(a.getCycleStart(), loaded.getCycleStart());
+		assertSameEvolution(a, loaded);
+	}
+
+	@Test
+	public void subclassesAreRejected() throws Exception {
+		Generation init = new Generation("......O........");
+		Automaton rule = new Automaton(new ElementaryRule(30) {}, init, new CircularBoundaryConditions());
+		assertThrows(IllegalArgumentException.class, () -> save(rule));
+
+		Automaton bc = new Automaton(new ElementaryRule(30), init, new CircularBoundaryConditions() {});
+		assertThrows(IllegalArgumentException.class, () -> save(bc));
+
+		Automaton history = new Automaton(new ElementaryRule(30), init, new CircularBoundaryConditions());
+		history.setGenerationHistory(new ListHistory() {});
+		assertThrows(IllegalArgumentException.class, () -> save(history));
+	}
+
+	@Test
+	public void generalRulesRoundTrip() throws Exception {
+		Generation init = new Generation(GenerationTest.randomStates(129, 13));
+		Rule[] rules = {new GeneralElementaryRule(4, new BigInteger(512, new Random(4))),
+				new GeneralTotalisticRule(9, 0x5A5A5)};
+		for(Rule rule : rules) {
+			Automaton a = new Automaton(rule, init, new FixedBoundaryConditions(CellState.OFF, CellState.ON));
+			a.evolve(20);
+			assertSameEvolution(a, roundTrip(a));
+		}
+	}
+
+	@Test
+	public void radiusSevenRuleWithTopBitSet() throws Exception {
+		int radius = GeneralElementaryRule.MAX_RADIUS;
+		int bits = 1 << (2 * radius + 1);
+		BigInteger code = new BigInteger(bits, new Random(7)).setBit(bits - 1);
+		Automaton a = new Automaton(new GeneralElementaryRule(radius, code),
+				new Generation("....O..OO.......O.O...OOO.....O........."), new CircularBoundaryConditions());
+		a.evolve(10);
+		Automaton loaded = roundTrip(a);
+		assertEquals(code, ((GeneralElementaryRule) loaded.getRule()).getWolframCode());
+		assertSameEvolution(a, loaded);
+	}
+
+	@Test
+	public void fileHistoryIsRejected(@TempDir File dir) throws Exception {
+		Automaton a = new Automaton(new ElementaryRule(30), new Generation("......O........"),
+				new CircularBoundaryConditions());
+		try(FileHistory history = new FileHistory(new File(dir, "history.bin"), false)) {
+			a.setGenerationHistory(history);
+			a.evolve(3);
+			assertThrows(IllegalArgumentException.class, () -> save(a));
+		}
+	}
+
+	@Test
+	public void newerVersionIsRejected() throws Exception {
+		Automaton a = new Automaton(new ElementaryRule(30), new Generation("......O........"),
+				new CircularBoundaryConditions());
+		byte[] checkpoint = save(a);
+		checkpoint[7] = 99;
+		assertThrows(IOException.class, () -> AutomatonCheckpoint.load(new ByteArrayInputStream(checkpoint)));
+	}
+}
@@ -0,0 +1,53 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class AutomatonMetricsTest {
+
+	private static Automaton automaton() throws InvalidRuleNumException {
+		return new Automaton(new ElementaryRule(30), new Generation(GenerationTest.randomStates(1000, 2)),
+				new CircularBoundaryConditions());
+	}
+
+	@Test
+	public void liveValuesMatchTheSnapshot() throws Exception {
+		Automaton a = automaton();
+		a.evolve(200);
+		AutomatonMetrics metrics = a.getMetrics();
+		AutomatonMetricsSnapshot snapshot = metrics.snapshot();
+		assertEquals(200, metrics.getStepsEvolved());
+		assertEquals(200 * 1000, metrics.getCellsEvolved());
+		assertEquals(snapshot.getCellsPerSecond(), metrics.getCellsPerSecond());
+		assertEquals(snapshot.getMeanStepNanos(), metrics.getMeanStepNanos());
+		assertEquals(snapshot.getMedianStepNanos(), metrics.getMedianStepNanos());
+		assertEquals(snapshot.getP90StepNanos(), metrics.getP90StepNanos());
+		assertEquals(snapshot.getP99StepNanos(), metrics.getP99StepNanos());
+		assertEquals(snapshot.getMaxStepNanos(), metrics.getMaxStepNanos());
+		assertEquals(201, metrics.getGenerationsRetained());
+		assertTrue(metrics.getMedianStepNanos() <= metrics.getP99StepNanos());
+		assertTrue(metrics.getP99StepNanos() <= metrics.getMaxStepNanos());
+
+		metrics.reset();
+		assertEquals(0, metrics.getStepsEvolved());
+		assertEquals(0, metrics.getMedianStepNanos());
+		assertEquals(0, metrics.getCellsPerSecond());
+	}
+
+	@Test
+	public void percentilesAreWithinTheirBucket() throws Exception {
+		AutomatonMetrics metrics = automaton().getMetrics();
+		for(int i = 1; i <= 1000; ++i) {
+			metrics.recordSteps(1, 1000, 1000L * i);
+		}
+		long[] exact = {500_000, 900_000, 990_000};
+		long[] reported = {metrics.getMedianStepNanos(), metrics.getP90StepNanos(), metrics.getP99StepNanos()};
+		for(int i = 0; i < exact.length; ++i) {
+			assertTrue(Math.abs(reported[i] - exact[i]) <= exact[i] / 16, reported[i] + " for " + exact[i]);
+		}
+		assertEquals(1_000_000, metrics.getMaxStepNanos());
+		assertEquals(500_500.0, metrics.getMeanStepNanos());
+		assertEquals(metrics.getP99StepNanos(), metrics.snapshot().getStepNanosPercentile(99));
+		assertEquals(metrics.getMaxStepNanos(), metrics.snapshot().getStepNanosPercentile(100));
+	}
+}
@@ -0,0 +1,196 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class AutomatonTest {
+
+	private static Automaton automaton() throws InvalidRuleNumException {
+		return new Automaton(new ElementaryRule(110), new Generation("....O...OO..O.....O.O..........O..."),
+				new CircularBoundaryConditions());
+	}
+
+	@Test
+	public void memoizedEvolutionNeedsBoundedHistory() throws Exception {
+		Automaton a = automaton();
+		assertThrows(IllegalStateException.class, () -> a.setMemoizedEvolution(1000));
+
+		a.setRetentionPolicy(16, 4, Long.MAX_VALUE);
+		a.setMemoizedEvolution(1000);
+		assertThrows(IllegalArgumentException.class, () -> a.setGenerationHistory(new ListHistory()));
+		a.evolve(500);
+
+		Automaton expected = automaton();
+		expected.evolve(500);
+		assertEqualStates(expected.getGeneration(500), a.getGeneration(500));
+		assertEqualStates(expected.getGeneration(123), a.getGeneration(123));
+	}
+
+	@Test
+	public void memoizedEvolutionMatchesStepwise() throws Exception {
+		Rule[] rules = {new ElementaryRule(30), new ElementaryRule(90), new ElementaryRule(110), new TotalisticRule(22)};
+		BoundaryConditions[] conditions = {new CircularBoundaryConditions(),
+				new FixedBoundaryConditions(CellState.ON, CellState.OFF)};
+		for(Rule rule : rules) {
+			for(BoundaryConditions bc : conditions) {
+				for(int width : new int[] {5, 64, 100, 257}) {
+					Generation init = new Generation(GenerationTest.randomStates(width, width));
+					Automaton expected = new Automaton(rule, init, bc);
+					expected.evolve(700);
+					Automaton a = new Automaton(rule, init, bc);
+					a.setRetentionPolicy(64, 2, Long.MAX_VALUE);
+					a.setMemoizedEvolution(10000);
+					a.evolve(300);
+					a.evolve(400);
+					for(int step : new int[] {700, 1, 299, 300, 301, 517, 699}) {
+						assertEqualStates(expected.getGeneration(step), a.getGeneration(step));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void cycleDetectionIsOptIn() throws Exception {
+		Automaton a = automaton();
+		assertFalse(a.isCycleDetection());
+		a.evolve(200);
+		assertEquals(-1, a.getCycleStart());
+		assertEquals(201, a.getGenerationHistory().size());
+
+		Automaton b = new Automaton(new ElementaryRule(90), new Generation("...O......"),
+				new CircularBoundaryConditions());
+		b.setCycleDetection(true);
+		b.evolve(200);
+		assertTrue(b.getCycleStart() >= 0);
+		assertEquals(b.getGeneration(b.getCycleStart()), b.getGeneration(b.getCycleStart() + b.getCyclePeriod()));
+	}
+
+	@Test
+	public void cyclicStepsMatchStepwise() throws Exception {
+		Rule[] rules = {new ElementaryRule(90), new ElementaryRule(110), new TotalisticRule(22)};
+		BoundaryConditions[] conditions = {new CircularBoundaryConditions(),
+				new FixedBoundaryConditions(CellState.ON, CellState.OFF)};
+		for(Rule rule : rules) {
+			for(BoundaryConditions bc : conditions) {
+				Generation init = new Generation(GenerationTest.randomStates(12, rule.getRuleNum()));
+				Automaton expected = new Automaton(rule, init, bc);
+				expected.evolve(3000);
+				Automaton a = new Automaton(rule, init, bc);
+				a.setCycleDetection(true);
+				a.evolve(1000);
+				a.evolve(2000);
+				assertTrue(a.getCycleStart() >= 0);
+				assertTrue(a.getGenerationHistory().size() < 3001);
+				assertEquals(3000, a.getTotalSteps());
+				for(int step = 0; step <= 3000; step += 37) {
+					RuleTest.assertSameCells(expected.getGeneration(step), a.getGeneration(step));
+				}
+				RuleTest.assertSameCells(expected.getGeneration(3000), a.getGeneration(3000));
+				assertEquals(AutomatonMeasurements.transientLength(a), a.getCycleStart());
+			}
+		}
+	}
+
+	@Test
+	public void lightConeStatesMatchFullEvolution() throws Exception {
+		Rule[] rules = {new ElementaryRule(30), new TotalisticRule(22),
+				new GeneralElementaryRule(3, BigInteger.valueOf(0x6996L).shiftLeft(90))};
+		for(Rule rule : rules) {
+			for(BoundaryConditions bc : RuleTest.boundaryConditions()) {
+				for(int width : new int[] {40, 300}) {
+					Generation init = new Generation(GenerationTest.randomStates(width, width + rule.getRadius()));
+					Automaton expected = new Automaton(rule, init, bc);
+					expected.evolve(120);
+					Automaton a = new Automaton(rule, init, bc);
+					a.setRetentionPolicy(16, 2, Long.MAX_VALUE);
+					a.evolve(50);
+					int[][] ranges = {{0, 1}, {0, width}, {width - 1, width}, {width / 2, width / 2 + 10}, {3, 3}};
+					for(int step : new int[] {0, 7, 33, 50, 51, 80, 120}) {
+						Generation gen = expected.getGeneration(step);
+						for(int[] range : ranges) {
+							CellState[] states = a.getStates(step, range[0], range[1]);
+							assertEquals(range[1] - range[0], states.length);
+							for(int i = 0; i < states.length; ++i) {
+								assertEquals(gen.getCell(range[0] + i).getState(), states[i]);
+							}
+						}
+						assertEquals(gen.getCell(width - 2).getState(), a.getState(step, width - 2));
+					}
+					assertEquals(50, a.getTotalSteps());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void historyExportMatchesTheGenerations() throws Exception {
+		Automaton a = new Automaton(new ElementaryRule(30), new Generation(GenerationTest.randomStates(5000, 1)),
+				new CircularBoundaryConditions());
+		a.evolve(29);
+		StringBuilder expected = new StringBuilder();
+		StringBuilder range = new StringBuilder();
+		for(int i = 0; i <= 29; ++i) {
+			String row = a.getGeneration(i).toString();
+			expected.append(i > 0 ? "\n" : "").append(row);
+			if(i >= 3)
+				range.append(i > 3 ? "\n" : "").append(row, 63, 4097);
+		}
+		assertEquals(expected.toString(), a.getHistory());
+
+		StringWriter writer = new StringWriter();
+		a.writeHistory(writer);
+		assertEquals(expected.toString(), writer.toString());
+
+		// steps past the last one are evolved first
+		StringBuilder builder = new StringBuilder();
+		a.writeHistory(builder, 3, 30, 63, 4097);
+		assertEquals(range.toString(), builder.toString());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Automaton b = new Automaton(new ElementaryRule(30), a.getGeneration(0), new CircularBoundaryConditions());
+		b.writeHistory(Channels.newChannel(bytes), 3, 30, 63, 4097);
+		assertEquals(range.toString(), bytes.toString(StandardCharsets.US_ASCII));
+		assertEquals(29, b.getTotalSteps());
+	}
+
+	/**
+	 * Jumped-to Generations do not record subrule numbers, so only compare 
+	 * the states.
+	 * @param expected
+	 * @param actual
+	 */
+	static void assertEqualStates(Generation expected, Generation actual) {
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	@Test
+	public void temporalBlockingMatchesStepwise() throws Exception {
+		Generation init = new Generation(GenerationTest.randomStates(2000, 30));
+		Automaton expected = new Automaton(new ElementaryRule(30), init, new CircularBoundaryConditions());
+		expected.evolve(50);
+
+		Automaton a = new Automaton(new ElementaryRule(30), init, new CircularBoundaryConditions());
+		a.setTemporalBlocking(8, 256);
+		a.evolve(50);
+		assertEquals(51, a.getGenerationHistory().size());
+		for(int i = 0; i <= 50; ++i) {
+			RuleTest.assertSameCells(expected.getGeneration(i), a.getGeneration(i));
+		}
+
+		Automaton jumps = new Automaton(new ElementaryRule(30), init, new CircularBoundaryConditions());
+		jumps.setRetentionPolicy(16, 2, Long.MAX_VALUE);
+		jumps.setTemporalBlocking(8, 256);
+		jumps.evolve(50);
+		for(int step : new int[] {50, 17, 33, 49}) {
+			assertEqualStates(expected.getGeneration(step), jumps.getGeneration(step));
+		}
+	}
+}
@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class CheckpointHistoryTest {
+
+	private static Automaton automaton() throws InvalidRuleNumException {
+		return new Automaton(new ElementaryRule(30), new Generation("......O........"),
+				new CircularBoundaryConditions());
+	}
+
+	@Test
+	public void budgetSmallerThanOneGeneration() throws Exception {
+		Automaton a = automaton();
+		a.evolve(5);
+		a.setRetentionPolicy(4, 4, 10);
+		a.evolve(20);
+
+		Automaton expected = automaton();
+		expected.evolve(25);
+		for(int i = 0; i <= 25; ++i) {
+			RuleTest.assertSameCells(expected.getGeneration(i), a.getGeneration(i));
+		}
+		CheckpointHistory history = (CheckpointHistory) a.getGenerationHistory();
+		assertNotNull(history.get(0));
+		assertNotNull(history.get(25));
+		assertEquals(1, history.getWindowSize());
+	}
+
+	@Test
+	public void zeroBudgetKeepsFirstAndLatest() {
+		CheckpointHistory history = new CheckpointHistory(1, 3, 0);
+		Generation gen = new Generation("O.O.O");
+		for(int i = 0; i < 10; ++i) {
+			history.add(i, gen);
+		}
+		assertNotNull(history.get(0));
+		assertNotNull(history.get(9));
+		assertEquals(9, history.floorStep(9));
+	}
+
+	@Test
+	public void recomputedGenerationsMatchFullHistory() throws Exception {
+		Generation init = new Generation(GenerationTest.randomStates(200, 5));
+		Automaton expected = new Automaton(new ElementaryRule(110), init, new CircularBoundaryConditions());
+		Automaton a = new Automaton(new ElementaryRule(110), init, new CircularBoundaryConditions());
+		a.setRetentionPolicy(8, 3, 20 * init.getApproximateBytes());
+		expected.evolve(300);
+		a.evolve(300);
+		CheckpointHistory history = (CheckpointHistory) a.getGenerationHistory();
+		assertTrue(history.size() < 40);
+		for(int i = 300; i >= 0; i -= 7) {
+			RuleTest.assertSameCells(expected.getGeneration(i), a.getGeneration(i));
+		}
+		assertTrue(a.getHistoryRecomputes() > 0);
+	}
+}
@@ -0,0 +1,82 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentAutomatonTest {
+
+	@Test
+	public void generationsMatchAutomaton() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Rule rule = new TotalisticRule(22);
+			BoundaryConditions bc = new FixedBoundaryConditions(CellState.ON, CellState.OFF);
+			Generation init = new Generation(GenerationTest.randomStates(1000, 8));
+			Automaton expected = new Automaton(rule, init, bc);
+			expected.evolve(60);
+			ConcurrentAutomaton a = new ConcurrentAutomaton(rule, init, bc);
+			a.evolve(20);
+			a.setParallelism(pool, 64);
+			a.evolve(20);
+			a.setSubruleTracking(false);
+			a.getGeneration(60);
+			assertEquals(60, a.getTotalSteps());
+			for(int step = 0; step <= 60; ++step) {
+				if(step <= 40)
+					RuleTest.assertSameCells(expected.getGeneration(step), a.getGeneration(step));
+				else
+					assertEquals(expected.getGeneration(step), a.getGeneration(step));
+			}
+			assertEquals(expected.getGeneration(60), a.getCurrent());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void concurrentReadersSeeTheSameGenerations() throws Exception {
+		Rule rule = new ElementaryRule(110);
+		BoundaryConditions bc = new CircularBoundaryConditions();
+		Generation init = new Generation(GenerationTest.randomStates(500, 12));
+		Generation[] expected = new Generation[401];
+		expected[0] = init;
+		for(int step = 1; step <= 400; ++step) {
+			expected[step] = rule.evolve(expected[step - 1], bc);
+		}
+		ConcurrentAutomaton a = new ConcurrentAutomaton(rule, init, bc);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> readers = new ArrayList<Future<?>>();
+			for(int t = 0; t < 8; ++t) {
+				Random random = new Random(t);
+				readers.add(executor.submit(() -> {
+					for(int i = 0; i < 200; ++i) {
+						int step = random.nextInt(401);
+						RuleTest.assertSameCells(expected[step], a.getGeneration(step));
+					}
+					return null;
+				}));
+			}
+			for(int i = 0; i < 40; ++i) {
+				a.evolve(5);
+			}
+			for(Future<?> reader : readers) {
+				reader.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		for(int step = 0; step <= 400; ++step) {
+			RuleTest.assertSameCells(expected[step], a.getGeneration(step));
+		}
+	}
+}
@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class DeltaHistoryTest {
+
+	private static Rule[] rules() throws InvalidRuleNumException {
+		return new Rule[] {new ElementaryRule(30), new ElementaryRule(232), new TotalisticRule(22),
+				new GeneralElementaryRule(4, BigInteger.valueOf(0x9A3C5L).shiftLeft(300))};
+	}
+
+	@Test
+	public void rebuiltGenerationsMatchListHistory() throws Exception {
+		BoundaryConditions bc = new CircularBoundaryConditions();
+		for(Rule rule : rules()) {
+			for(int interval : new int[] {1, 4, 7}) {
+				Generation init = new Generation(GenerationTest.randomStates(300, interval));
+				Automaton expected = new Automaton(rule, init, bc);
+				Automaton a = new Automaton(rule, init, bc);
+				DeltaHistory history = new DeltaHistory(interval);
+				a.setGenerationHistory(history);
+				for(Automaton b : new Automaton[] {expected, a}) {
+					b.evolve(20);
+					b.setSubruleTracking(false);
+					b.evolve(5);
+					b.setSubruleTracking(true);
+					b.evolve(15);
+				}
+				for(int step : new int[] {40, 0, 13, 12, 3, 21, 22, 23, 24, 25, 26, 39, 38}) {
+					RuleTest.assertSameCells(expected.getGeneration(step), history.get(step));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void hammingDistancesMatchTheGenerations() throws Exception {
+		for(Rule rule : rules()) {
+			DeltaHistory history = new DeltaHistory(5);
+			Automaton a = new Automaton(rule, new Generation(GenerationTest.randomStates(300, 2)),
+					new FixedBoundaryConditions(CellState.ON, CellState.OFF));
+			a.setGenerationHistory(history);
+			a.evolve(30);
+			int[][] ranges = {{0, 300}, {5, 70}, {63, 64}, {64, 300}, {10, 10}};
+			for(int step = 1; step < history.size(); ++step) {
+				for(int[] range : ranges) {
+					assertEquals(AutomatonMeasurements.hammingDistance(a.getGeneration(step - 1),
+							a.getGeneration(step), range[0], range[1]),
+							history.getHammingDistance(step, range[0], range[1]));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void retainedBytesCountEveryGeneration() throws Exception {
+		Rule rule = new ElementaryRule(30);
+		BoundaryConditions bc = new CircularBoundaryConditions();
+		Generation gen = new Generation(GenerationTest.randomStates(1000, 4));
+
+		DeltaHistory keyframes = new DeltaHistory(1);
+		long bytes = 0;
+		for(int step = 0; step < 6; ++step) {
+			keyframes.add(step, gen);
+			bytes += gen.getApproximateBytes();
+			gen = rule.evolve(gen, bc);
+		}
+		assertEquals(bytes, keyframes.getRetainedBytes());
+
+		DeltaHistory history = new DeltaHistory(10);
+		for(int step = 0; step < 6; ++step) {
+			history.add(step, gen);
+			gen = rule.evolve(gen, bc);
+		}
+		long retained = history.getRetainedBytes();
+		assertTrue(retained > history.get(0).getApproximateBytes() + history.get(5).getApproximateBytes());
+		Generation rebuilt = history.get(2);
+		assertEquals(retained + rebuilt.getApproximateBytes(), history.getRetainedBytes());
+	}
+}
@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileHistoryTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void storedGenerationsMatchListHistory() throws Exception {
+		Generation init = new Generation(GenerationTest.randomStates(300, 17));
+		Automaton expected = new Automaton(new ElementaryRule(110), init, new CircularBoundaryConditions());
+		expected.evolve(100);
+		Automaton a = new Automaton(new ElementaryRule(110), init, new CircularBoundaryConditions());
+		a.evolve(10);
+		try(FileHistory history = new FileHistory(new File(this.dir.toFile(), "history.bin"), true)) {
+			a.setGenerationHistory(history);
+			for(int step = 10; step < 100; step += 30) {
+				// read the records written so far, then keep appending
+				for(int i = 0; i <= step; ++i) {
+					assertEquals(expected.getGeneration(i), history.get(i));
+				}
+				a.evolve(30);
+			}
+			assertEquals(101, history.size());
+			assertNull(history.get(101));
+			for(int i = 0; i <= 100; ++i) {
+				RuleTest.assertSameCells(expected.getGeneration(i), a.getGeneration(i));
+			}
+		}
+	}
+
+	@Test
+	public void recordsAcrossChunksMatchEvolution() throws Exception {
+		// 256 KB records, so 256 records fill a chunk
+		Generation init = new Generation(GenerationTest.randomStates(1 << 21, 3));
+		Rule rule = new ElementaryRule(30);
+		BoundaryConditions bc = new CircularBoundaryConditions();
+		try(FileHistory history = new FileHistory(new File(this.dir.toFile(), "wide.bin"), false)) {
+			Automaton a = new Automaton(rule, init, bc);
+			a.setSubruleTracking(false);
+			a.setGenerationHistory(history);
+			a.evolve(250);
+			assertEquals(rule.evolve(history.get(249), bc, false), history.get(250));
+			a.evolve(50);
+			for(int step : new int[] {1, 249, 255, 256, 257, 299}) {
+				assertEquals(rule.evolve(history.get(step), bc, false), history.get(step + 1));
+			}
+			assertEquals(init, history.get(0));
+		}
+	}
+
+	@Test
+	public void subruleNumbersAbove255AreRejected() throws Exception {
+		Rule rule = new GeneralElementaryRule(4, BigInteger.ONE.shiftLeft(511));
+		Generation init = new Generation(GenerationTest.randomStates(100, 5));
+		BoundaryConditions bc = new CircularBoundaryConditions();
+		try(FileHistory history = new FileHistory(new File(this.dir.toFile(), "subrules.bin"), true)) {
+			history.add(0, init);
+			assertThrows(IllegalArgumentException.class, () -> history.add(1, rule.evolve(init, bc, true)));
+		}
+	}
+}
@@ -0,0 +1,102 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class GenerationLoaderTest {
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Return the symbols of the given states.
+	 * @param states
+	 * @return
+	 */
+	private static String symbols(CellState[] states) {
+		StringBuilder symbols = new StringBuilder();
+		for(CellState state : states) {
+			symbols.append(state);
+		}
+		return symbols.toString();
+	}
+
+	private File write(String name, byte[] bytes) throws Exception {
+		File file = new File(this.dir.toFile(), name);
+		Files.write(file.toPath(), bytes);
+		return file;
+	}
+
+	@Test
+	public void everyInputMatchesTheStates() throws Exception {
+		int[] widths = {0, 1, 7, 8, 9, 63, 64, 65, 300, 200003};
+		for(int width : widths) {
+			CellState[] states = GenerationTest.randomStates(width, width);
+			Generation expected = new Generation(states);
+			String symbols = symbols(states);
+			byte[] bytes = symbols.getBytes(StandardCharsets.US_ASCII);
+
+			assertEquals(expected, GenerationLoader.fromBytes(bytes));
+			assertEquals(expected, GenerationLoader.fromChars(symbols));
+			assertEquals(expected, new Generation(symbols));
+			assertEquals(expected, GenerationLoader.read(new ByteArrayInputStream(bytes)));
+			assertEquals(expected, GenerationLoader.load(write("plain.txt", bytes)));
+
+			byte[] framed = ("xx" + symbols + "\r\nyy").getBytes(StandardCharsets.US_ASCII);
+			assertEquals(expected, GenerationLoader.fromBytes(framed, 2, width + 2));
+			for(String terminator : new String[] {"\n", "\r\n"}) {
+				byte[] line = (symbols + terminator).getBytes(StandardCharsets.US_ASCII);
+				assertEquals(expected, GenerationLoader.fromBytes(line));
+				assertEquals(expected, GenerationLoader.read(new ByteArrayInputStream(line)));
+				assertEquals(expected, GenerationLoader.load(write("line.txt", line)));
+			}
+
+			ByteArrayOutputStream packed = new ByteArrayOutputStream();
+			GenerationLoader.writePacked(expected, packed);
+			assertEquals(expected, GenerationLoader.readPacked(new ByteArrayInputStream(packed.toByteArray())));
+			File file = new File(this.dir.toFile(), "packed.bin");
+			try(OutputStream out = new FileOutputStream(file)) {
+				GenerationLoader.writePacked(expected, out);
+			}
+			assertEquals(expected, GenerationLoader.load(file));
+		}
+	}
+
+	@Test
+	public void invalidSymbolsAreReportedWithTheirOffset() throws Exception {
+		String symbols = symbols(GenerationTest.randomStates(70000, 1));
+		for(int offset : new int[] {0, 7, 8, 63, 64, 65535, 65536, 69999}) {
+			for(char invalid : new char[] {'x', 'o', '\n', '\u014F', '\u012E'}) {
+				StringBuilder chars = new StringBuilder(symbols);
+				chars.setCharAt(offset, invalid);
+				if(invalid == '\n' && offset == chars.length() - 1)
+					continue;
+				InvalidSymbolException e = assertThrows(InvalidSymbolException.class,
+						() -> GenerationLoader.fromChars(chars));
+				assertEquals(offset, e.getOffset());
+				if(invalid > 0x7F)
+					continue;
+
+				byte[] bytes = chars.toString().getBytes(StandardCharsets.US_ASCII);
+				e = assertThrows(InvalidSymbolException.class, () -> GenerationLoader.fromBytes(bytes));
+				assertEquals(offset, e.getOffset());
+				e = assertThrows(InvalidSymbolException.class,
+						() -> GenerationLoader.read(new ByteArrayInputStream(bytes)));
+				assertEquals(offset, e.getOffset());
+				File file = write("invalid.txt", bytes);
+				e = assertThrows(InvalidSymbolException.class, () -> GenerationLoader.load(file));
+				assertEquals(offset, e.getOffset());
+			}
+		}
+	}
+}
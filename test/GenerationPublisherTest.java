@@ -0,0 +1,95 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class GenerationPublisherTest {
+
+	/**
+	 * A subscriber that requests one Generation at a time, optionally
+	 * sleeping before each request, and keeps what it receives.
+	 */
+	private static class Collector implements Flow.Subscriber<Generation> {
+
+		private final List<Generation> received = new ArrayList<Generation>();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private final long delayMillis;
+		private Flow.Subscription subscription;
+		private Throwable error;
+
+		Collector(long delayMillis) {
+			this.delayMillis = delayMillis;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(Generation gen) {
+			this.received.add(gen);
+			try {
+				Thread.sleep(this.delayMillis);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.subscription.request(1);
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			this.error = error;
+			this.done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			this.done.countDown();
+		}
+	}
+
+	@Test
+	public void publishedGenerationsMatchStepwise() throws Exception {
+		Automaton a = new Automaton(new ElementaryRule(110), new Generation(GenerationTest.randomStates(300, 6)),
+				new CircularBoundaryConditions());
+		a.evolve(10);
+		Automaton expected = new Automaton(a.getRule(), a.getGeneration(0), a.getBoundaryConditions());
+		expected.evolve(60);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Collector fast = new Collector(0);
+			Collector slow = new Collector(1);
+			try(GenerationPublisher publisher = a.publish(50, 2, executor)) {
+				assertEquals(11, publisher.getFirstStep());
+				publisher.subscribe(fast);
+				publisher.subscribe(slow);
+				publisher.start();
+				assertTrue(fast.done.await(30, TimeUnit.SECONDS));
+				assertTrue(slow.done.await(30, TimeUnit.SECONDS));
+			}
+			for(Collector collector : new Collector[] {fast, slow}) {
+				assertEquals(null, collector.error);
+				assertEquals(50, collector.received.size());
+				for(int i = 0; i < 50; ++i) {
+					RuleTest.assertSameCells(expected.getGeneration(11 + i), collector.received.get(i));
+				}
+			}
+			assertEquals(10, a.getTotalSteps());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+}
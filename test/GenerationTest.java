@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class GenerationTest {
+
+	/**
+	 * Widths on both sides of the word boundaries.
+	 */
+	static final int[] WIDTHS = {1, 2, 63, 64, 65, 127, 128, 129, 300};
+
+	/**
+	 * Return random states of the given width, determined by the seed.
+	 * @param width
+	 * @param seed
+	 * @return
+	 */
+	static CellState[] randomStates(int width, long seed) {
+		Random random = new Random(seed);
+		CellState[] states = new CellState[width];
+		for(int i = 0; i < width; ++i) {
+			states[i] = random.nextBoolean() ? CellState.ON : CellState.OFF;
+		}
+		return states;
+	}
+
+	@Test
+	public void packedStatesMatchTheCells() {
+		for(int width : WIDTHS) {
+			CellState[] states = randomStates(width, width);
+			Generation gen = new Generation(states);
+			StringBuilder symbols = new StringBuilder();
+			assertEquals(width, gen.size());
+			for(int i = 0; i < width; ++i) {
+				assertEquals(states[i], gen.getCell(i).getState());
+				symbols.append(states[i]);
+			}
+			assertEquals(symbols.toString(), gen.toString());
+			assertEquals(gen.toString(), new Generation(gen.toString()).toString());
+		}
+	}
+
+	@Test
+	public void evolvedCellsKeepTheirSubruleNumbers() {
+		Cell[] cells = new Cell[70];
+		for(int i = 0; i < cells.length; ++i) {
+			cells[i] = new EvolvedCell(i % 3 == 0 ? CellState.ON : CellState.OFF, (7 * i) & 0xFF);
+		}
+		Generation gen = new Generation(cells);
+		for(int i = 0; i < cells.length; ++i) {
+			Cell cell = gen.getCell(i);
+			assertTrue(cell instanceof EvolvedCell);
+			assertEquals(cells[i].getState(), cell.getState());
+			assertEquals((7 * i) & 0xFF, ((EvolvedCell) cell).getSubruleNum());
+		}
+		assertEquals(Cell.class, new Generation("O.O").getCell(1).getClass());
+	}
+
+	@Test
+	public void subruleNumbersAbove255AreKept() {
+		Cell[] cells = new Cell[70];
+		for(int i = 0; i < cells.length; ++i) {
+			cells[i] = new EvolvedCell(i % 3 == 0 ? CellState.ON : CellState.OFF, 100 * i);
+		}
+		Generation gen = new Generation(cells);
+		int[] counts = new int[100 * cells.length];
+		gen.addSubruleCounts(counts, 0);
+		for(int i = 0; i < cells.length; ++i) {
+			assertEquals(cells[i].getState(), gen.getCell(i).getState());
+			assertEquals(100 * i, ((EvolvedCell) gen.getCell(i)).getSubruleNum());
+			assertEquals(1, counts[100 * i]);
+		}
+	}
+
+	@Test
+	public void equalityComparesStatesOnly() {
+		for(int width : WIDTHS) {
+			CellState[] states = randomStates(width, width);
+			Generation gen = new Generation(states);
+			Cell[] cells = new Cell[width];
+			for(int i = 0; i < width; ++i) {
+				cells[i] = new EvolvedCell(states[i], i & 7);
+			}
+			Generation evolved = new Generation(cells);
+			assertEquals(gen, evolved);
+			assertEquals(gen.hashCode(), evolved.hashCode());
+
+			states[width - 1] = states[width - 1] == CellState.ON ? CellState.OFF : CellState.ON;
+			assertNotEquals(gen, new Generation(states));
+		}
+		assertNotEquals(new Generation("O.."), new Generation("O..."));
+	}
+
+	@Test
+	public void hammingDistancesMatchPerCell() throws Exception {
+		for(int width : WIDTHS) {
+			Generation g1 = new Generation(randomStates(width, width));
+			Generation g2 = new Generation(randomStates(width, width + 1));
+			for(int from = 0; from <= width; from += 1 + width / 7) {
+				for(int to = from; to <= width; to += 1 + width / 5) {
+					int expected = 0;
+					for(int i = from; i < to; ++i) {
+						if(g1.getCell(i).getState() != g2.getCell(i).getState())
+							expected++;
+					}
+					assertEquals(expected, AutomatonMeasurements.hammingDistance(g1, g2, from, to));
+				}
+			}
+		}
+
+		Automaton a = new Automaton(new ElementaryRule(30), new Generation(randomStates(200, 3)),
+				new CircularBoundaryConditions());
+		a.evolve(20);
+		int[] distances = AutomatonMeasurements.hammingDistances(a, 50, 180);
+		for(int step = 0; step < 20; ++step) {
+			String s1 = a.getGeneration(step).toString();
+			String s2 = a.getGeneration(step + 1).toString();
+			int expected = 0;
+			for(int i = 50; i < 180; ++i) {
+				if(s1.charAt(i) != s2.charAt(i))
+					expected++;
+			}
+			assertEquals(expected, distances[step]);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class RuleSweepTest {
+
+	@Test
+	public void sweepMatchesAutomatonMeasurements() throws Exception {
+		RuleSweep sweep = new RuleSweep(150, 40);
+		sweep.addElementaryRules(28, 32);
+		sweep.addTotalisticRules(20, 22);
+		sweep.addSeeds(1, 2);
+		sweep.addBoundaryConditions(new CircularBoundaryConditions());
+		sweep.addBoundaryConditions(new FixedBoundaryConditions(CellState.ON, CellState.OFF));
+		List<SweepResult> results = new ArrayList<SweepResult>();
+		sweep.run(3, results::add);
+
+		assertEquals(sweep.getTotalRuns(), results.size());
+		assertEquals(sweep.getTotalRuns(), sweep.getCompletedRuns());
+		assertEquals(sweep.getTotalRuns() * 150 * 40, sweep.getCellsEvolved());
+		for(SweepResult result : results) {
+			Automaton a = new Automaton(result.getRule(), RuleSweep.randomGeneration(150, result.getSeed()),
+					result.getBoundaryConditions());
+			a.evolve(40);
+			assertArrayEquals(AutomatonMeasurements.hammingDistances(a), result.getHammingDistances());
+			assertArrayEquals(AutomatonMeasurements.subruleCounts(a), result.getSubruleCounts());
+		}
+	}
+}
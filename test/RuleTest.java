@@ -0,0 +1,325 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class RuleTest {
+
+	/**
+	 * A rule written against the original API: it only implements 
+	 * evolve(Cell[]) and has no rule table.
+	 */
+	@SuppressWarnings("deprecation")
+	private static class LegacyRule30 extends Rule {
+
+		LegacyRule30() {
+			super(30);
+		}
+
+		@Override
+		public int getNumSubrules() {
+			return 8;
+		}
+
+		@Override
+		public Cell[] getNeighborhood(int cellIdx, Generation gen, BoundaryConditions bc) {
+			return new Cell[] {bc.getNeighbor(cellIdx, -1, gen), gen.getCell(cellIdx), bc.getNeighbor(cellIdx, 1, gen)};
+		}
+
+		@Override
+		public EvolvedCell evolve(Cell[] neighborhood) {
+			String pattern = "";
+			for(Cell cell : neighborhood) {
+				pattern += cell.getState() == CellState.ON ? "1" : "0";
+			}
+			int subruleNum = Integer.parseInt(pattern, 2);
+			return new EvolvedCell((30 >> subruleNum & 1) == 1 ? CellState.ON : CellState.OFF, subruleNum);
+		}
+
+		@Override
+		public String toString() {
+			return "legacy rule 30";
+		}
+	}
+
+	/**
+	 * Boundary conditions that reflect the Generation at its ends, which no
+	 * Rule has a fast path for.
+	 */
+	static class Reflecting implements BoundaryConditions {
+
+		@Override
+		public Cell getNeighbor(int cellIdx, int offset, Generation gen) {
+			int idx = cellIdx + offset;
+			int size = gen.size();
+			while(idx < 0 || idx >= size) {
+				idx = idx < 0 ? -idx - 1 : 2 * size - idx - 1;
+			}
+			return gen.getCell(idx);
+		}
+	}
+
+	static BoundaryConditions[] boundaryConditions() {
+		return new BoundaryConditions[] {new CircularBoundaryConditions(),
+				new FixedBoundaryConditions(CellState.ON, CellState.OFF),
+				new FixedBoundaryConditions(CellState.OFF, CellState.ON), new Reflecting()};
+	}
+
+	/**
+	 * Evolve one step the way the original Rule.evolve did: build the
+	 * neighborhood of every Cell and apply evolve(Cell[]) to it.
+	 * @param rule
+	 * @param gen
+	 * @param bc
+	 * @return
+	 */
+	static Generation evolvePerCell(Rule rule, Generation gen, BoundaryConditions bc) {
+		Cell[] next = new Cell[gen.size()];
+		for(int i = 0; i < gen.size(); ++i) {
+			next[i] = rule.evolve(rule.getNeighborhood(i, gen, bc));
+		}
+		return new Generation(next);
+	}
+
+	/**
+	 * Assert that two Generations have the same Cells, with the same
+	 * subrule numbers if the expected one has them.
+	 * @param expected
+	 * @param actual
+	 */
+	static void assertSameCells(Generation expected, Generation actual) {
+		assertEquals(expected.toString(), actual.toString());
+		for(int i = 0; i < expected.size(); ++i) {
+			Cell cell = expected.getCell(i);
+			if(cell instanceof EvolvedCell)
+				assertEquals(((EvolvedCell) cell).getSubruleNum(), ((EvolvedCell) actual.getCell(i)).getSubruleNum());
+		}
+	}
+
+	/**
+	 * Evolve random Generations of every width in GenerationTest.WIDTHS for
+	 * a few steps with the rule and compare each step with evolvePerCell.
+	 * @param rule
+	 * @param bc
+	 */
+	static void assertMatchesPerCell(Rule rule, BoundaryConditions bc) {
+		for(int width : GenerationTest.WIDTHS) {
+			Generation gen = new Generation(GenerationTest.randomStates(width, 31 * width + rule.getRuleNum()));
+			for(int step = 0; step < 3; ++step) {
+				Generation expected = evolvePerCell(rule, gen, bc);
+				Generation actual = rule.evolve(gen, bc);
+				assertSameCells(expected, actual);
+				gen = actual;
+			}
+		}
+	}
+
+	@Test
+	public void elementaryWordsMatchPerCell() throws Exception {
+		for(int ruleNum = 0; ruleNum < 256; ++ruleNum) {
+			for(BoundaryConditions bc : boundaryConditions()) {
+				assertMatchesPerCell(new ElementaryRule(ruleNum), bc);
+			}
+		}
+	}
+
+	@Test
+	public void totalisticTableMatchesPerCell() throws Exception {
+		for(int ruleNum = 0; ruleNum < 64; ++ruleNum) {
+			for(BoundaryConditions bc : boundaryConditions()) {
+				assertMatchesPerCell(new TotalisticRule(ruleNum), bc);
+			}
+		}
+	}
+
+	@Test
+	public void legacySubclassIsAppliedThroughEvolve() throws Exception {
+		for(BoundaryConditions bc : boundaryConditions()) {
+			for(int width : GenerationTest.WIDTHS) {
+				Generation expected = new Generation(GenerationTest.randomStates(width, width));
+				Generation actual = expected;
+				for(int step = 0; step < 5; ++step) {
+					expected = new ElementaryRule(30).evolve(expected, bc);
+					actual = new LegacyRule30().evolve(actual, bc);
+					assertSameCells(expected, actual);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void untrackedEvolutionGivesPlainCells() throws Exception {
+		Rule[] rules = {new ElementaryRule(110), new TotalisticRule(22), new LegacyRule30()};
+		for(Rule rule : rules) {
+			for(BoundaryConditions bc : boundaryConditions()) {
+				Generation gen = new Generation(GenerationTest.randomStates(129, 7));
+				Generation tracked = rule.evolve(gen, bc, true);
+				Generation untracked = rule.evolve(gen, bc, false);
+				assertSameCells(evolvePerCell(rule, gen, bc), tracked);
+				assertEquals(tracked.toString(), untracked.toString());
+				for(int i = 0; i < gen.size(); ++i) {
+					assertEquals(EvolvedCell.class, tracked.getCell(i).getClass());
+					assertEquals(Cell.class, untracked.getCell(i).getClass());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void parallelStripesMatchSequential() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Rule[] rules = {new ElementaryRule(30), new ElementaryRule(110), new TotalisticRule(22), new LegacyRule30()};
+			for(Rule rule : rules) {
+				for(BoundaryConditions bc : boundaryConditions()) {
+					for(int width : new int[] {64, 65, 1000, 4099}) {
+						Generation gen = new Generation(GenerationTest.randomStates(width, width));
+						for(int step = 0; step < 3; ++step) {
+							Generation expected = rule.evolve(gen, bc, true);
+							Generation actual = rule.evolve(gen, bc, true, pool, 64);
+							assertSameCells(expected, actual);
+							gen = actual;
+						}
+					}
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void generalRulesMatchPerCell() throws Exception {
+		Random random = new Random(17);
+		for(int radius = 0; radius <= GeneralElementaryRule.MAX_RADIUS; ++radius) {
+			GeneralElementaryRule rule = new GeneralElementaryRule(radius, new BigInteger(1 << (2 * radius + 1), random));
+			for(BoundaryConditions bc : boundaryConditions()) {
+				assertMatchesPerCell(rule, bc);
+			}
+		}
+		for(int radius = 0; radius <= GeneralTotalisticRule.MAX_RADIUS; radius += 3) {
+			GeneralTotalisticRule rule = new GeneralTotalisticRule(radius, random.nextLong() >>> (62 - 2 * radius));
+			for(BoundaryConditions bc : boundaryConditions()) {
+				assertMatchesPerCell(rule, bc);
+			}
+		}
+	}
+
+	@Test
+	public void generalRulesMatchTheFixedRadiusRules() throws Exception {
+		for(BoundaryConditions bc : boundaryConditions()) {
+			Generation gen = new Generation(GenerationTest.randomStates(129, 5));
+			for(int ruleNum = 0; ruleNum < 256; ++ruleNum) {
+				assertSameCells(new ElementaryRule(ruleNum).evolve(gen, bc),
+						new GeneralElementaryRule(1, ruleNum).evolve(gen, bc));
+			}
+			for(int ruleNum = 0; ruleNum < 64; ++ruleNum) {
+				assertSameCells(new TotalisticRule(ruleNum).evolve(gen, bc),
+						new GeneralTotalisticRule(2, ruleNum).evolve(gen, bc));
+			}
+		}
+	}
+
+	@Test
+	public void subruleNumbersAbove255AreTracked() throws Exception {
+		Rule rule = new GeneralElementaryRule(4, new BigInteger(512, new Random(3)));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(BoundaryConditions bc : boundaryConditions()) {
+				Generation gen = new Generation(GenerationTest.randomStates(1000, 11));
+				Generation expected = evolvePerCell(rule, gen, bc);
+				assertSameCells(expected, rule.evolve(gen, bc, true));
+				assertSameCells(expected, rule.evolve(gen, bc, true, pool, 64));
+				boolean above255 = false;
+				for(int i = 0; i < gen.size(); ++i) {
+					above255 |= ((EvolvedCell) expected.getCell(i)).getSubruleNum() > 255;
+				}
+				assertTrue(above255);
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void paddedViewsMatchGetNeighbor() {
+		for(BoundaryConditions bc : boundaryConditions()) {
+			for(int width : GenerationTest.WIDTHS) {
+				Generation gen = new Generation(GenerationTest.randomStates(width, 3 * width));
+				for(int halo : new int[] {0, 1, 2, 7, 63, 64, 65, 130}) {
+					PaddedGeneration padded = bc.pad(gen, halo);
+					for(int idx = -halo; idx < width + halo; ++idx) {
+						CellState expected = idx < 0 ? bc.getNeighbor(0, idx, gen).getState()
+								: idx >= width ? bc.getNeighbor(width - 1, idx - width + 1, gen).getState()
+								: gen.getCell(idx).getState();
+						assertEquals(expected, padded.getState(idx));
+					}
+					for(int idx = -halo; idx < width + halo; ++idx) {
+						long word = padded.wordAt(idx);
+						for(int j = 0; j < 64; ++j) {
+							long bit = idx + j < width + halo ? padded.bit(idx + j) : 0;
+							assertEquals(bit, (word >>> j) & 1);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void temporalBlockingMatchesStepwise() throws Exception {
+		Rule[] rules = {new ElementaryRule(30), new ElementaryRule(110), new TotalisticRule(22),
+				new GeneralElementaryRule(4, new BigInteger(512, new Random(6))), new LegacyRule30()};
+		BoundaryConditions[] conditions = {new CircularBoundaryConditions(),
+				new FixedBoundaryConditions(CellState.ON, CellState.OFF), new Reflecting()};
+		for(Rule rule : rules) {
+			for(BoundaryConditions bc : conditions) {
+				for(int width : new int[] {130, 1000}) {
+					Generation init = new Generation(GenerationTest.randomStates(width, width + 1));
+					Generation[] expected = new Generation[18];
+					expected[0] = init;
+					for(int step = 1; step < expected.length; ++step) {
+						expected[step] = rule.evolve(expected[step - 1], bc, true);
+					}
+					for(int tileCells : new int[] {64, 200}) {
+						for(int stepsPerTile : new int[] {1, 3, 8}) {
+							assertSameCells(expected[17], rule.evolve(init, bc, true, 17, stepsPerTile, tileCells));
+						}
+						Generation[] steps = rule.evolveSteps(init, bc, true, 9, tileCells);
+						for(int step = 1; step <= 9; ++step) {
+							assertSameCells(expected[step], steps[step - 1]);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void totalisticStripesMatchPerCell() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(int ruleNum = 0; ruleNum < 64; ++ruleNum) {
+				Rule rule = new TotalisticRule(ruleNum);
+				for(BoundaryConditions bc : boundaryConditions()) {
+					Generation gen = new Generation(GenerationTest.randomStates(1000, ruleNum));
+					for(int step = 0; step < 3; ++step) {
+						Generation expected = evolvePerCell(rule, gen, bc);
+						assertSameCells(expected, rule.evolve(gen, bc, true, pool, 64));
+						assertEquals(expected, rule.evolve(gen, bc, false, pool, 64));
+						gen = expected;
+					}
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+}
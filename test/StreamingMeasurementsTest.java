@@ -0,0 +1,46 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class StreamingMeasurementsTest {
+
+	private static void assertMatchesAutomatonMeasurements(Rule rule, boolean subruleTracking) throws Exception {
+		Generation init = new Generation(GenerationTest.randomStates(300, 11));
+		Automaton expected = new Automaton(rule, init, new CircularBoundaryConditions());
+		expected.evolve(60);
+
+		Automaton a = new Automaton(rule, init, new CircularBoundaryConditions());
+		a.setSubruleTracking(subruleTracking);
+		a.setRetentionPolicy(16, 2, Long.MAX_VALUE);
+		a.evolve(10);
+		StreamingMeasurements measurements = new StreamingMeasurements();
+		a.addEvolutionListener(measurements);
+		a.evolve(50);
+
+		assertEquals(11, measurements.getFirstStep());
+		assertEquals(50, measurements.getStepCount());
+		int[] hammingDistances = AutomatonMeasurements.hammingDistances(expected);
+		int[][] subruleCounts = AutomatonMeasurements.subruleCounts(expected);
+		double[] densities = measurements.getDensities();
+		for(int i = 0; i < 50; ++i) {
+			assertEquals(hammingDistances[10 + i], measurements.getHammingDistances()[i]);
+			assertArrayEquals(subruleCounts[10 + i], measurements.getSubruleCounts()[i]);
+			String states = expected.getGeneration(11 + i).toString();
+			long on = states.chars().filter(c -> c == 'O').count();
+			assertEquals((double) on / states.length(), densities[i], 1e-12);
+		}
+	}
+
+	@Test
+	public void trackedStepsMatchAutomatonMeasurements() throws Exception {
+		assertMatchesAutomatonMeasurements(new ElementaryRule(110), true);
+		assertMatchesAutomatonMeasurements(new TotalisticRule(22), true);
+	}
+
+	@Test
+	public void untrackedStepsMatchAutomatonMeasurements() throws Exception {
+		assertMatchesAutomatonMeasurements(new ElementaryRule(110), false);
+		assertMatchesAutomatonMeasurements(new TotalisticRule(22), false);
+	}
+}